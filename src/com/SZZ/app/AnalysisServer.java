@@ -0,0 +1,674 @@
+package com.SZZ.app;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.diff.DiffAlgorithm;
+
+import com.SZZ.jiraAnalyser.Application;
+import com.SZZ.jiraAnalyser.entities.IssueStore;
+import com.SZZ.jiraAnalyser.entities.Metrics;
+import com.SZZ.jiraAnalyser.git.BlameCache;
+import com.SZZ.jiraAnalyser.git.Git;
+import com.SZZ.jiraAnalyser.git.JiraRetriever;
+import com.SZZ.jiraAnalyser.output.JsonLinesSink;
+import com.SZZ.jiraAnalyser.output.OutputFormat;
+import com.SZZ.jiraAnalyser.output.Timestamps;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Resident server running analyses submitted over HTTP, so that projects
+ * analysed again do not pay for a new JVM, reopening the repository and
+ * reloading the issues.
+ *
+ * Each project is kept in its own directory named after its key, as with
+ * -batch. Between analyses the server keeps, for the most recently analysed
+ * projects, the Git of the clone (repository session, blame and diff caches,
+ * file history index) and the issues loaded, which are reloaded only when
+ * the Jira synchronization changed their files. An analysis of a project
+ * whose repository did not move only reads the log, and one after a few new
+ * commits only blames what they need.
+ *
+ * The server listens on the loopback interface only:
+ *  - POST /jobs with the parameters git, jira and key (and optionally
+ *    full=true, output=csv|jsonl|binary, diff=histogram|myers), in the query
+ *    or as a form, queues an analysis and returns the job
+ *  - GET /jobs lists the jobs, GET /jobs/{id} returns one
+ *  - GET /jobs/{id}/fixing, /jobs/{id}/inducing and /jobs/{id}/metrics
+ *    return the result and metrics files of the project of a finished job
+ *  - GET /projects lists the projects kept warm, DELETE /projects/{key}
+ *    releases one
+ * Jobs of the same project wait in the queue of the project and run one
+ * after the other; jobs of different projects run at the same time,
+ * "concurrency" at most, sharing one pool of "workers" threads and the memory
+ * budget of the blame caches.
+ */
+public class AnalysisServer implements AutoCloseable {
+
+	public static final int DEFAULT_PORT = 8087;
+
+	/*
+	 * Finished jobs forgotten past this number
+	 */
+	private static final int MAX_JOBS = 1000;
+	private static final Pattern JOB = Pattern.compile("/jobs/(\\d+)(?:/(fixing|inducing|metrics))?");
+	private static final Pattern PROJECT = Pattern.compile("/projects/([^/]+)");
+	private static final Pattern KEY = Pattern.compile("[A-Za-z0-9_-]+");
+
+	/**
+	 * A submitted analysis
+	 */
+	private static class Job {
+		final long id;
+		final String gitUrl;
+		final String jiraUrl;
+		final String key;
+		final boolean full;
+		final OutputFormat outputFormat;
+		final DiffAlgorithm.SupportedAlgorithm diffAlgorithm;
+		final long submitted = System.currentTimeMillis();
+		volatile String status = "queued";
+		volatile long started;
+		volatile long finished;
+		volatile int commits;
+		volatile int links;
+		volatile long suspects;
+		volatile long issues;
+		volatile String error;
+
+		Job(long id, String gitUrl, String jiraUrl, String key, boolean full, OutputFormat outputFormat,
+				DiffAlgorithm.SupportedAlgorithm diffAlgorithm) {
+			this.id = id;
+			this.gitUrl = gitUrl;
+			this.jiraUrl = jiraUrl;
+			this.key = key;
+			this.full = full;
+			this.outputFormat = outputFormat;
+			this.diffAlgorithm = diffAlgorithm;
+		}
+
+		void toJson(StringBuilder sb) {
+			long started = this.started;
+			long finished = this.finished;
+			sb.append("{\"id\":").append(id).append(",\"key\":");
+			JsonLinesSink.quote(sb, key).append(",\"status\":\"").append(status).append("\",\"git\":");
+			JsonLinesSink.quote(sb, gitUrl).append(",\"jira\":");
+			JsonLinesSink.quote(sb, jiraUrl).append(",\"full\":").append(full);
+			sb.append(",\"output\":\"").append(outputFormat.name().toLowerCase()).append('"');
+			sb.append(",\"submitted\":\"").append(Timestamps.format(submitted)).append('"');
+			sb.append(",\"started\":").append(started == 0 ? "null" : "\"" + Timestamps.format(started) + "\"");
+			sb.append(",\"finished\":").append(finished == 0 ? "null" : "\"" + Timestamps.format(finished) + "\"");
+			if (started != 0)
+				sb.append(",\"seconds\":").append(String.format(Locale.ROOT, "%.3f",
+						((finished != 0 ? finished : System.currentTimeMillis()) - started) / 1e3));
+			sb.append(",\"commits\":").append(commits).append(",\"links\":").append(links);
+			sb.append(",\"suspects\":").append(suspects).append(",\"issues\":").append(issues);
+			sb.append(",\"error\":");
+			JsonLinesSink.quote(sb, error).append('}');
+		}
+	}
+
+	/**
+	 * What is kept between the analyses of a project, with the jobs waiting
+	 * for it. Analyses hold its lock; users, queue and running are guarded by
+	 * the map of the workspaces.
+	 */
+	private static class Workspace {
+		final String key;
+		final File directory;
+		final Deque<Job> queue = new ArrayDeque<Job>();
+		volatile String gitUrl;
+		volatile Git git;
+		volatile IssueStore issues;
+		long issuesModified;
+		volatile int analyses;
+		int users;
+		boolean running;
+
+		Workspace(String key, File directory) {
+			this.key = key;
+			this.directory = directory;
+		}
+
+		synchronized void close() {
+			if (git != null)
+				git.close();
+			git = null;
+			issues = null;
+		}
+	}
+
+	private File outputDirectory = new File("server");
+	private int concurrency = 0;
+	private int workers = Runtime.getRuntime().availableProcessors();
+	private int warmProjects = 4;
+	private long memoryBudget = 0;
+	private int jiraThreads = 1;
+	private boolean binaryIssues = false;
+
+	private final AtomicLong ids = new AtomicLong();
+	private final Map<Long, Job> jobs = new LinkedHashMap<Long, Job>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Job> eldest) {
+			return size() > MAX_JOBS && eldest.getValue().finished != 0;
+		}
+	};
+	private final Map<String, Workspace> workspaces = new LinkedHashMap<String, Workspace>(16, 0.75f, true);
+	private HttpServer server;
+	private ExecutorService pool;
+	private ExecutorService runner;
+	private ExecutorService http;
+	private volatile boolean closing = false;
+
+	/**
+	 * It sets the directory holding the directories of the projects
+	 * (default server)
+	 * @param outputDirectory
+	 */
+	public void setOutputDirectory(File outputDirectory) {
+		this.outputDirectory = outputDirectory;
+	}
+
+	/**
+	 * It sets how many jobs of different projects run at the same time
+	 * @param concurrency 0 (default) for as many as the workers
+	 */
+	public void setConcurrency(int concurrency) {
+		this.concurrency = Math.max(0, concurrency);
+	}
+
+	/**
+	 * It sets the threads calculating the bug inducing commits of all jobs
+	 * (default one per processor)
+	 * @param workers
+	 */
+	public void setWorkers(int workers) {
+		this.workers = Math.max(1, workers);
+	}
+
+	/**
+	 * It sets how many projects keep their repository and issues open
+	 * between analyses (default 4), the least recently analysed one being
+	 * released first
+	 * @param warmProjects
+	 */
+	public void setWarmProjects(int warmProjects) {
+		this.warmProjects = Math.max(1, warmProjects);
+	}
+
+	/**
+	 * It sets the memory shared by the blame caches of the projects kept warm
+	 * @param bytes 0 (default) for BlameCache.DEFAULT_BUDGET per project
+	 */
+	public void setMemoryBudget(long bytes) {
+		this.memoryBudget = Math.max(0, bytes);
+	}
+
+	public void setJiraThreads(int jiraThreads) {
+		this.jiraThreads = Math.max(1, jiraThreads);
+	}
+
+	public void setBinaryIssues(boolean binaryIssues) {
+		this.binaryIssues = binaryIssues;
+	}
+
+	/**
+	 * It starts listening on the loopback interface
+	 * @param port 0 for a free port
+	 * @throws IOException
+	 */
+	public void start(int port) throws IOException {
+		outputDirectory.mkdirs();
+		int running = concurrency > 0 ? concurrency : workers;
+		long blameBudget = memoryBudget > 0 ? memoryBudget / warmProjects : BlameCache.DEFAULT_BUDGET;
+		if (warmProjects * blameBudget > Runtime.getRuntime().maxMemory())
+			System.out.println("Warning: the blame caches may use more than the " + (Runtime.getRuntime().maxMemory() >> 20)
+					+ " MB of the heap, raise -Xmx or lower the memory budget");
+		pool = Executors.newWorkStealingPool(workers);
+		runner = Executors.newFixedThreadPool(running);
+		http = Executors.newFixedThreadPool(2);
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+		server.createContext("/", this::handle);
+		server.setExecutor(http);
+		server.start();
+		System.out.println("Analysis server listening on http://127.0.0.1:" + getPort() + "/jobs, " + running
+				+ " jobs at a time, " + workers + " workers, " + warmProjects + " projects kept warm with "
+				+ (blameBudget >> 20) + " MB of blame cache each");
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * It queues an analysis
+	 * @param gitUrl
+	 * @param jiraUrl
+	 * @param key Jira key of the project, also the name of its directory
+	 * @param full whether the whole history is analysed again
+	 * @param outputFormat
+	 * @param diffAlgorithm
+	 * @return the id of the job
+	 */
+	public long submit(String gitUrl, String jiraUrl, String key, boolean full, OutputFormat outputFormat,
+			DiffAlgorithm.SupportedAlgorithm diffAlgorithm) {
+		if (!KEY.matcher(key).matches())
+			throw new IllegalArgumentException("Invalid key " + key);
+		final Job job = new Job(ids.incrementAndGet(), gitUrl, jiraUrl, key, full, outputFormat, diffAlgorithm);
+		synchronized (jobs) {
+			jobs.put(job.id, job);
+		}
+		Workspace w = acquire(key);
+		boolean start;
+		synchronized (workspaces) {
+			w.queue.add(job);
+			start = !w.running;
+			w.running = true;
+		}
+		System.out.println("Job " + job.id + " queued for project " + key);
+		if (start)
+			schedule(w);
+		return job.id;
+	}
+
+	/*
+	 * It gives the next job of a project a runner slot. Only one job of a
+	 * project is scheduled at a time, so the jobs waiting for a busy project
+	 * never hold a slot that other projects could use.
+	 */
+	private void schedule(Workspace w) {
+		try {
+			runner.execute(() -> run(w));
+		} catch (RejectedExecutionException e) {
+			cancel(w);
+		}
+	}
+
+	/*
+	 * It runs the oldest job of a project, then schedules the next one
+	 */
+	private void run(Workspace w) {
+		if (closing) {
+			cancel(w);
+			return;
+		}
+		Job job;
+		synchronized (workspaces) {
+			job = w.queue.poll();
+		}
+		try {
+			synchronized (w) {
+				analyse(job, w);
+			}
+		} finally {
+			boolean next;
+			synchronized (workspaces) {
+				w.users--;
+				next = !w.queue.isEmpty();
+				w.running = next;
+			}
+			if (next)
+				schedule(w);
+		}
+	}
+
+	/*
+	 * It cancels the jobs waiting for a project
+	 */
+	private void cancel(Workspace w) {
+		List<Job> cancelled;
+		synchronized (workspaces) {
+			cancelled = new ArrayList<Job>(w.queue);
+			w.queue.clear();
+			w.running = false;
+			w.users -= cancelled.size();
+		}
+		for (Job job : cancelled) {
+			job.status = "cancelled";
+			job.finished = System.currentTimeMillis();
+		}
+	}
+
+	/*
+	 * It synchronizes the issues then mines the project, as -all does,
+	 * reusing what the workspace kept from the previous analyses
+	 */
+	private void analyse(Job job, Workspace w) {
+		job.started = System.currentTimeMillis();
+		job.status = "running";
+		Metrics metrics = new Metrics();
+		try {
+			try (JiraRetriever retriever = new JiraRetriever(SZZApplication.jiraSearchUrl(job.jiraUrl), job.key,
+					w.directory)) {
+				retriever.setBinaryStore(binaryIssues);
+				retriever.setConcurrency(jiraThreads);
+				retriever.setMetrics(metrics);
+				retriever.updateIssues();
+			}
+			long modified = IssueStore.lastModified(w.directory, job.key);
+			if (w.issues == null || modified != w.issuesModified) {
+				w.issues = IssueStore.load(w.directory, job.key);
+				w.issuesModified = modified;
+			}
+			if (w.git == null || !job.gitUrl.equals(w.gitUrl)) {
+				if (w.git != null)
+					w.git.close();
+				w.git = new Git(w.directory.toPath(), new URL(job.gitUrl));
+				w.gitUrl = job.gitUrl;
+			}
+
+			Application application = new Application();
+			application.setDirectory(w.directory);
+			application.setSharedPool(pool);
+			application.setGit(w.git);
+			application.setIssues(w.issues);
+			application.setBlameCacheBudget(memoryBudget / warmProjects);
+			application.setIncremental(!job.full);
+			application.setDiffAlgorithm(job.diffAlgorithm);
+			application.setOutputFormat(job.outputFormat);
+			application.setMetrics(metrics);
+			boolean ok = application.mineData(job.gitUrl, job.jiraUrl.replace("{0}", job.key), job.key, job.key);
+			job.commits = application.getCommitCount();
+			job.links = application.getLinkCount();
+			job.status = ok ? "done" : "failed";
+		} catch (Exception e) {
+			e.printStackTrace();
+			job.error = e.toString();
+			job.status = "failed";
+		}
+		w.analyses++;
+		job.suspects = metrics.getCounter("suspects");
+		job.issues = metrics.getCounter("jira.issues");
+		job.finished = System.currentTimeMillis();
+		System.out.println("Job " + job.id + " " + job.status + " in " + (job.finished - job.started) / 1000 + " s");
+	}
+
+	/*
+	 * It returns the workspace of a project for a new job, releasing the least
+	 * recently used idle one when too many are kept. The workspace is not
+	 * released while the job waits or runs.
+	 */
+	private Workspace acquire(String key) {
+		Workspace w;
+		Workspace evicted = null;
+		synchronized (workspaces) {
+			w = workspaces.get(key);
+			if (w == null) {
+				w = new Workspace(key, new File(outputDirectory, key).getAbsoluteFile());
+				workspaces.put(key, w);
+			}
+			w.users++;
+			if (workspaces.size() > warmProjects) {
+				for (Iterator<Workspace> it = workspaces.values().iterator(); it.hasNext();) {
+					Workspace eldest = it.next();
+					if (eldest.users == 0) {
+						it.remove();
+						evicted = eldest;
+						break;
+					}
+				}
+			}
+		}
+		if (evicted != null) {
+			evicted.close();
+			System.out.println("Project " + evicted.key + " released");
+		}
+		return w;
+	}
+
+	/*
+	 * It releases the repository and issues kept for a project
+	 * @return false if the project is not kept or is being analysed
+	 */
+	private boolean evict(String key) {
+		Workspace w;
+		synchronized (workspaces) {
+			w = workspaces.get(key);
+			if (w == null || w.users > 0)
+				return false;
+			workspaces.remove(key);
+		}
+		w.close();
+		System.out.println("Project " + key + " released");
+		return true;
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String path = exchange.getRequestURI().getPath();
+			String method = exchange.getRequestMethod();
+			Matcher m;
+			if (path.equals("/jobs") && method.equals("POST"))
+				submit(exchange);
+			else if (path.equals("/jobs") && method.equals("GET"))
+				send(exchange, 200, jobsJson());
+			else if ((m = JOB.matcher(path)).matches() && method.equals("GET"))
+				job(exchange, Long.parseLong(m.group(1)), m.group(2));
+			else if (path.equals("/projects") && method.equals("GET"))
+				send(exchange, 200, projectsJson());
+			else if ((m = PROJECT.matcher(path)).matches() && method.equals("DELETE")) {
+				if (evict(m.group(1)))
+					send(exchange, 200, "{\"released\":true}");
+				else
+					send(exchange, 409, error("Project " + m.group(1) + " is not kept or is being analysed"));
+			} else
+				send(exchange, 404, error("Unknown request " + method + " " + path));
+		} catch (Exception e) {
+			e.printStackTrace();
+			send(exchange, 500, error(e.toString()));
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void submit(HttpExchange exchange) throws IOException {
+		Map<String, String> parameters = parameters(exchange);
+		String gitUrl = parameters.get("git");
+		String jiraUrl = parameters.get("jira");
+		String key = parameters.get("key");
+		if (gitUrl == null || jiraUrl == null || key == null) {
+			send(exchange, 400, error("The parameters git, jira and key are required"));
+			return;
+		}
+		if (!gitUrl.endsWith(".git")) {
+			send(exchange, 400, error("git must be the URL of a .git repository"));
+			return;
+		}
+		long id;
+		try {
+			new URL(gitUrl);
+			id = submit(gitUrl, jiraUrl, key, "true".equals(parameters.get("full")),
+					OutputFormat.valueOf(parameters.getOrDefault("output", "csv").toUpperCase()),
+					DiffAlgorithm.SupportedAlgorithm.valueOf(parameters.getOrDefault("diff", "histogram").toUpperCase()));
+		} catch (IllegalArgumentException | IOException e) {
+			send(exchange, 400, error(e.getMessage()));
+			return;
+		}
+		exchange.getResponseHeaders().set("Location", "/jobs/" + id);
+		send(exchange, 202, jobJson(getJob(id)));
+	}
+
+	private void job(HttpExchange exchange, long id, String file) throws IOException {
+		Job job = getJob(id);
+		if (job == null) {
+			send(exchange, 404, error("Unknown job " + id));
+			return;
+		}
+		if (file == null) {
+			send(exchange, 200, jobJson(job));
+			return;
+		}
+		if (job.finished == 0) {
+			send(exchange, 409, error("Job " + id + " is " + job.status));
+			return;
+		}
+		File directory = new File(outputDirectory, job.key);
+		File result;
+		String type;
+		if (file.equals("metrics")) {
+			result = new File(directory, job.key + "_metrics.json");
+			type = "application/json";
+		} else {
+			result = file.equals("fixing") ? job.outputFormat.bugFixingFile(directory, job.key)
+					: job.outputFormat.bugInducingFile(directory, job.key);
+			type = job.outputFormat == OutputFormat.CSV ? "text/csv"
+					: job.outputFormat == OutputFormat.JSONL ? "application/x-ndjson" : "application/octet-stream";
+		}
+		if (!result.exists()) {
+			send(exchange, 404, error(result.getName() + " not found"));
+			return;
+		}
+		exchange.getResponseHeaders().set("Content-Type", type);
+		exchange.sendResponseHeaders(200, result.length());
+		try (OutputStream out = exchange.getResponseBody()) {
+			Files.copy(result.toPath(), out);
+		}
+	}
+
+	private Job getJob(long id) {
+		synchronized (jobs) {
+			return jobs.get(id);
+		}
+	}
+
+	private String jobsJson() {
+		List<Job> list;
+		synchronized (jobs) {
+			list = new ArrayList<Job>(jobs.values());
+		}
+		StringBuilder sb = new StringBuilder("[");
+		for (Job job : list) {
+			if (sb.length() > 1)
+				sb.append(",\n");
+			job.toJson(sb);
+		}
+		return sb.append("]").toString();
+	}
+
+	private String jobJson(Job job) {
+		StringBuilder sb = new StringBuilder();
+		job.toJson(sb);
+		return sb.toString();
+	}
+
+	private String projectsJson() {
+		List<Workspace> list;
+		synchronized (workspaces) {
+			list = new ArrayList<Workspace>(workspaces.values());
+		}
+		StringBuilder sb = new StringBuilder("[");
+		for (Workspace w : list) {
+			if (sb.length() > 1)
+				sb.append(",\n");
+			sb.append("{\"key\":");
+			JsonLinesSink.quote(sb, w.key).append(",\"directory\":");
+			JsonLinesSink.quote(sb, w.directory.getPath()).append(",\"analyses\":").append(w.analyses);
+			IssueStore issues = w.issues;
+			sb.append(",\"issues\":").append(issues == null ? 0 : issues.size());
+			Git git = w.git;
+			if (git != null) {
+				BlameCache cache = git.getBlameCache();
+				sb.append(",\"blameCache\":{\"entries\":").append(cache.size()).append(",\"bytes\":")
+						.append(cache.getUsedBytes()).append(",\"hits\":").append(cache.getHits())
+						.append(",\"misses\":").append(cache.getMisses()).append('}');
+			}
+			sb.append('}');
+		}
+		return sb.append("]").toString();
+	}
+
+	private static String error(String message) {
+		StringBuilder sb = new StringBuilder("{\"error\":");
+		return JsonLinesSink.quote(sb, message).append('}').toString();
+	}
+
+	/*
+	 * It reads the parameters of the query and of a form body
+	 */
+	private static Map<String, String> parameters(HttpExchange exchange) throws IOException {
+		Map<String, String> parameters = new HashMap<String, String>();
+		decode(exchange.getRequestURI().getRawQuery(), parameters);
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		try (InputStream in = exchange.getRequestBody()) {
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = in.read(buffer)) > 0)
+				body.write(buffer, 0, n);
+		}
+		decode(new String(body.toByteArray(), StandardCharsets.UTF_8).trim(), parameters);
+		return parameters;
+	}
+
+	private static void decode(String form, Map<String, String> parameters) throws UnsupportedEncodingException {
+		if (form == null || form.isEmpty())
+			return;
+		for (String pair : form.split("&")) {
+			int equals = pair.indexOf('=');
+			if (equals > 0)
+				parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+						URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+		}
+	}
+
+	private static void send(HttpExchange exchange, int status, String json) throws IOException {
+		byte[] body = (json + "\n").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	/**
+	 * It stops listening, cancels the queued jobs, waits for the running ones
+	 * and releases the projects
+	 */
+	@Override
+	public void close() {
+		if (server == null)
+			return;
+		closing = true;
+		server.stop(0);
+		http.shutdownNow();
+		runner.shutdown();
+		try {
+			runner.awaitTermination(1, TimeUnit.HOURS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		pool.shutdownNow();
+		synchronized (workspaces) {
+			for (Workspace w : workspaces.values())
+				w.close();
+			workspaces.clear();
+		}
+	}
+}
@@ -0,0 +1,288 @@
+package com.SZZ.app;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.jgit.diff.DiffAlgorithm;
+
+import com.SZZ.jiraAnalyser.Application;
+import com.SZZ.jiraAnalyser.entities.Metrics;
+import com.SZZ.jiraAnalyser.git.BlameCache;
+import com.SZZ.jiraAnalyser.git.JiraRetriever;
+import com.SZZ.jiraAnalyser.output.OutputFormat;
+
+/**
+ * Runner of the analysis of several projects listed in a manifest, each line
+ * holding the git URL, the Jira URL and the Jira key of a project, separated
+ * by spaces, commas or semicolons. Empty lines and lines starting with # are
+ * skipped.
+ *
+ * Projects are analysed at the same time, "concurrency" at most, each one in
+ * its own directory named after its key within the output directory (batch
+ * by default), so that their files never clash.
+ * They share one budget:
+ *  - the bug inducing commits of all projects are calculated by a single
+ *    pool of "workers" threads
+ *  - the memory budget is split between the blame caches of the projects
+ *    running at the same time
+ * Reading the log and linking the commits of a project run on threads of
+ * their own, mostly waiting for git and for the pool.
+ *
+ * Once all projects are done a summary is printed and saved as summary.csv
+ * in the output directory; the measures of every project are in its
+ * directory.
+ */
+public class BatchRunner {
+
+	private static final String SUMMARY_HEADER = "key;status;commits;links;suspects;issues;seconds;directory";
+
+	/**
+	 * A project of the manifest
+	 */
+	public static class Project {
+		public final String gitUrl;
+		public final String jiraUrl;
+		public final String key;
+
+		public Project(String gitUrl, String jiraUrl, String key) {
+			this.gitUrl = gitUrl;
+			this.jiraUrl = jiraUrl;
+			this.key = key;
+		}
+	}
+
+	/**
+	 * What the analysis of a project found
+	 */
+	public static class Result {
+		public final Project project;
+		public final File directory;
+		public String status = "failed";
+		public int commits;
+		public int links;
+		public long suspects;
+		public long issues;
+		public long millis;
+
+		Result(Project project, File directory) {
+			this.project = project;
+			this.directory = directory;
+		}
+	}
+
+	private File outputDirectory = new File("batch");
+	private int concurrency = 0;
+	private int workers = Runtime.getRuntime().availableProcessors();
+	private long memoryBudget = 0;
+	private int jiraThreads = 1;
+	private boolean binaryIssues = false;
+	private boolean incremental = true;
+	private DiffAlgorithm.SupportedAlgorithm diffAlgorithm = DiffAlgorithm.SupportedAlgorithm.HISTOGRAM;
+	private OutputFormat outputFormat = OutputFormat.CSV;
+
+	/**
+	 * It reads the projects of a manifest
+	 * @param manifest
+	 * @return the projects, in the order of the manifest
+	 * @throws IOException if the file cannot be read, a line has not three
+	 *         fields or a key is repeated
+	 */
+	public static List<Project> readManifest(File manifest) throws IOException {
+		List<Project> projects = new ArrayList<Project>();
+		Set<String> keys = new HashSet<String>();
+		try (BufferedReader br = new BufferedReader(new FileReader(manifest))) {
+			String line;
+			int number = 0;
+			while ((line = br.readLine()) != null) {
+				number++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				String[] fields = line.split("[\\s,;]+");
+				if (fields.length != 3)
+					throw new IOException(manifest + ":" + number + ": expected gitUrl jiraUrl jiraKey");
+				if (!keys.add(fields[2]))
+					throw new IOException(manifest + ":" + number + ": project " + fields[2] + " listed twice");
+				projects.add(new Project(fields[0], fields[1], fields[2]));
+			}
+		}
+		return projects;
+	}
+
+	/**
+	 * It sets the directory holding the directories of the projects and the
+	 * summary (default batch)
+	 * @param outputDirectory
+	 */
+	public void setOutputDirectory(File outputDirectory) {
+		this.outputDirectory = outputDirectory;
+	}
+
+	/**
+	 * It sets how many projects are analysed at the same time
+	 * @param concurrency 0 (default) for as many as the workers
+	 */
+	public void setConcurrency(int concurrency) {
+		this.concurrency = Math.max(0, concurrency);
+	}
+
+	/**
+	 * It sets the threads calculating the bug inducing commits of all
+	 * projects (default one per processor)
+	 * @param workers
+	 */
+	public void setWorkers(int workers) {
+		this.workers = Math.max(1, workers);
+	}
+
+	/**
+	 * It sets the memory shared by the blame caches of the projects running
+	 * at the same time
+	 * @param bytes 0 (default) for BlameCache.DEFAULT_BUDGET per project
+	 */
+	public void setMemoryBudget(long bytes) {
+		this.memoryBudget = Math.max(0, bytes);
+	}
+
+	public void setJiraThreads(int jiraThreads) {
+		this.jiraThreads = Math.max(1, jiraThreads);
+	}
+
+	public void setBinaryIssues(boolean binaryIssues) {
+		this.binaryIssues = binaryIssues;
+	}
+
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	public void setDiffAlgorithm(DiffAlgorithm.SupportedAlgorithm diffAlgorithm) {
+		this.diffAlgorithm = diffAlgorithm;
+	}
+
+	public void setOutputFormat(OutputFormat outputFormat) {
+		this.outputFormat = outputFormat;
+	}
+
+	/**
+	 * It analyses the projects, prints the summary and saves it
+	 * @param projects
+	 * @return the results, in the order of the projects
+	 */
+	public List<Result> run(List<Project> projects) {
+		int running = Math.max(1, Math.min(projects.size(), concurrency > 0 ? concurrency : workers));
+		long blameBudget = memoryBudget > 0 ? Math.max(1, memoryBudget / running) : 0;
+		System.out.println("Analysing " + projects.size() + " projects, " + running + " at a time, with " + workers
+				+ " workers" + (blameBudget > 0 ? " and " + (blameBudget >> 20) + " MB of blame cache each" : ""));
+		if (running * (blameBudget > 0 ? blameBudget : BlameCache.DEFAULT_BUDGET) > Runtime.getRuntime().maxMemory())
+			System.out.println("Warning: the blame caches may use more than the " + (Runtime.getRuntime().maxMemory() >> 20)
+					+ " MB of the heap, raise -Xmx or lower the memory budget");
+		outputDirectory.mkdirs();
+		ExecutorService pool = Executors.newWorkStealingPool(workers);
+		ExecutorService runner = Executors.newFixedThreadPool(running);
+		List<Future<Result>> futures = new ArrayList<Future<Result>>();
+		for (final Project project : projects)
+			futures.add(runner.submit(() -> analyse(project, pool, blameBudget)));
+		List<Result> results = new ArrayList<Result>();
+		try {
+			for (int i = 0; i < projects.size(); i++) {
+				try {
+					results.add(futures.get(i).get());
+				} catch (Exception e) {
+					e.printStackTrace();
+					results.add(new Result(projects.get(i), new File(outputDirectory, projects.get(i).key)));
+				}
+			}
+		} finally {
+			runner.shutdownNow();
+			pool.shutdownNow();
+		}
+		printSummary(results);
+		File summary = new File(outputDirectory, "summary.csv");
+		try {
+			writeSummary(results, summary);
+			System.out.println("Summary saved in " + summary);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return results;
+	}
+
+	/*
+	 * It downloads the issues of a project then mines it, as -all does
+	 */
+	private Result analyse(Project project, ExecutorService pool, long blameBudget) {
+		Result result = new Result(project, new File(outputDirectory, project.key).getAbsoluteFile());
+		long start = System.currentTimeMillis();
+		Metrics metrics = new Metrics();
+		System.out.println("Project " + project.key + " started in " + result.directory);
+		try {
+			try (JiraRetriever retriever = new JiraRetriever(SZZApplication.jiraSearchUrl(project.jiraUrl),
+					project.key, result.directory)) {
+				retriever.setBinaryStore(binaryIssues);
+				retriever.setConcurrency(jiraThreads);
+				retriever.setMetrics(metrics);
+				retriever.updateIssues();
+			}
+
+			Application application = new Application();
+			application.setDirectory(result.directory);
+			application.setSharedPool(pool);
+			application.setBlameCacheBudget(blameBudget);
+			application.setIncremental(incremental);
+			application.setDiffAlgorithm(diffAlgorithm);
+			application.setOutputFormat(outputFormat);
+			application.setMetrics(metrics);
+			if (application.mineData(project.gitUrl, project.jiraUrl.replace("{0}", project.key), project.key,
+					project.key))
+				result.status = "ok";
+			result.commits = application.getCommitCount();
+			result.links = application.getLinkCount();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		result.suspects = metrics.getCounter("suspects");
+		result.issues = metrics.getCounter("jira.issues");
+		result.millis = System.currentTimeMillis() - start;
+		System.out.println("Project " + project.key + " " + result.status + " in " + result.millis / 1000 + " s");
+		return result;
+	}
+
+	private void printSummary(List<Result> results) {
+		System.out.println();
+		System.out.println(String.format("%-16s %-8s %10s %8s %10s %8s %10s", "project", "status", "commits", "links",
+				"suspects", "issues", "seconds"));
+		int ok = 0;
+		for (Result r : results) {
+			System.out.println(String.format("%-16s %-8s %10d %8d %10d %8d %10.1f", r.project.key, r.status, r.commits,
+					r.links, r.suspects, r.issues, r.millis / 1e3));
+			if ("ok".equals(r.status))
+				ok++;
+		}
+		System.out.println(ok + " of " + results.size() + " projects analysed");
+	}
+
+	private void writeSummary(List<Result> results, File file) throws IOException {
+		File part = new File(file.getPath() + ".part");
+		try (PrintWriter out = new PrintWriter(part, "UTF-8")) {
+			out.println(SUMMARY_HEADER);
+			for (Result r : results)
+				out.println(r.project.key + ";" + r.status + ";" + r.commits + ";" + r.links + ";" + r.suspects + ";"
+						+ r.issues + ";" + String.format(Locale.ROOT, "%.1f", r.millis / 1e3) + ";" + r.directory);
+		}
+		file.delete();
+		if (!part.renameTo(file))
+			throw new IOException("Cannot write " + file);
+	}
+}
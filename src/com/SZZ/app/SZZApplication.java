@@ -11,13 +11,16 @@ import java.util.LinkedList;
 import java.util.List;
 
 import org.apache.log4j.Logger;
+import org.eclipse.jgit.diff.DiffAlgorithm;
 import org.eclipse.jgit.util.FileUtils;
 
 import com.SZZ.jiraAnalyser.Application;
+import com.SZZ.jiraAnalyser.entities.Metrics;
 import com.SZZ.jiraAnalyser.entities.Transaction;
 import com.SZZ.jiraAnalyser.entities.TransactionManager;
 import com.SZZ.jiraAnalyser.git.Git;
 import com.SZZ.jiraAnalyser.git.JiraRetriever;
+import com.SZZ.jiraAnalyser.output.OutputFormat;
 
 public class SZZApplication {
 
@@ -51,22 +54,56 @@ System.out.println("executing open szz with the following parameters");
 			System.out.println("Welcome to the SZZ Calculation script.");
 			System.out.println("Here a guide how to use the script");
 			System.out.println("szz.jar -all githubUrl, jiraUrl, jiraKey => all steps together");
+			System.out.println("options: -workers n => threads calculating bug inducing commits (default 1)");
+			System.out.println("         -full => analyse the whole history again instead of the new commits only");
+			System.out.println("         -binaryIssues => also store Jira issues in a memory-mapped binary file");
+			System.out.println("         -jiraThreads n => Jira pages downloaded at the same time (default 1)");
+			System.out.println("         -diff histogram|myers => diff algorithm finding removed lines (default histogram)");
+			System.out.println("         -output csv|jsonl|binary => format of the result files (default csv)");
+			System.out.println("         -metrics file => where measures of the run are saved, Prometheus text if it ends with .prom (default jiraKey_metrics.json)");
+			System.out.println("         -metricsInterval s => also save the measures every s seconds during the run");
+			System.out.println("szz.jar -batch manifest => all steps for every 'githubUrl jiraUrl jiraKey' line of manifest");
+			System.out.println("options: -out dir => directory of the project directories and summary.csv (default batch)");
+			System.out.println("         -projects n => projects analysed at the same time (default as many as the workers)");
+			System.out.println("         -workers n => threads calculating bug inducing commits, shared by all projects (default one per processor)");
+			System.out.println("         -memory MB => memory shared by the blame caches of the running projects (default 64 each)");
+			System.out.println("         -full, -binaryIssues, -jiraThreads, -diff, -output => as for -all");
+			System.out.println("szz.jar -server => stays running and analyses the projects submitted to http://127.0.0.1:port/jobs");
+			System.out.println("options: -port n => port listened on the loopback interface (default " + AnalysisServer.DEFAULT_PORT + ")");
+			System.out.println("         -out dir => directory of the project directories (default server)");
+			System.out.println("         -projects n => projects analysed at the same time (default as many as the workers)");
+			System.out.println("         -workers n => threads calculating bug inducing commits, shared by all projects (default one per processor)");
+			System.out.println("         -warm n => projects keeping their repository, issues and caches open between analyses (default 4)");
+			System.out.println("         -memory MB => memory shared by the blame caches of the projects kept open (default 64 each)");
+			System.out.println("         -binaryIssues, -jiraThreads => as for -all");
 		} else {
 			switch (args[0]) {
 			case "-all":
 				Git git;
+				Metrics metrics = new Metrics();
 				try {
-					String[] array = args[2].split("/jira/projects/");
 					String projectName = args[3];
-					String jiraUrl = array[0] + jiraAPI;
-					JiraRetriever jr1 = new JiraRetriever(jiraUrl, projectName);
-					jr1.printIssues();
-
+					String jiraUrl = jiraSearchUrl(args[2]);
+					try (JiraRetriever jr1 = new JiraRetriever(jiraUrl, projectName)) {
+						jr1.setBinaryStore(hasOption(args, "-binaryIssues"));
+						jr1.setConcurrency(Integer.parseInt(getOption(args, "-jiraThreads", "1")));
+						jr1.setMetrics(metrics);
+						jr1.updateIssues();
+					}
 				} catch (Exception e) {
 					break;
 				}
 				try {
 					Application a = new Application();
+					a.setWorkers(Integer.parseInt(getOption(args, "-workers", "1")));
+					a.setIncremental(!hasOption(args, "-full"));
+					a.setDiffAlgorithm(DiffAlgorithm.SupportedAlgorithm.valueOf(
+							getOption(args, "-diff", "histogram").toUpperCase()));
+					a.setOutputFormat(OutputFormat.valueOf(getOption(args, "-output", "csv").toUpperCase()));
+					a.setMetrics(metrics);
+					if (hasOption(args, "-metrics"))
+						a.setMetricsFile(new File(getOption(args, "-metrics", null)));
+					a.setMetricsInterval(Long.parseLong(getOption(args, "-metricsInterval", "0")));
 					a.mineData(args[1], args[2].replace("{0}", args[3]), args[3], args[3]);
 				} catch (MalformedURLException e) {
 					// TODO Auto-generated catch block
@@ -77,6 +114,42 @@ System.out.println("executing open szz with the following parameters");
 				}
 //				clean(args[3]);
 				break;
+			case "-batch":
+				try {
+					BatchRunner runner = new BatchRunner();
+					runner.setOutputDirectory(new File(getOption(args, 2, "-out", "batch")));
+					runner.setConcurrency(Integer.parseInt(getOption(args, 2, "-projects", "0")));
+					runner.setWorkers(Integer.parseInt(getOption(args, 2, "-workers",
+							Runtime.getRuntime().availableProcessors() + "")));
+					runner.setMemoryBudget(Long.parseLong(getOption(args, 2, "-memory", "0")) * 1024 * 1024);
+					runner.setJiraThreads(Integer.parseInt(getOption(args, 2, "-jiraThreads", "1")));
+					runner.setBinaryIssues(hasOption(args, 2, "-binaryIssues"));
+					runner.setIncremental(!hasOption(args, 2, "-full"));
+					runner.setDiffAlgorithm(DiffAlgorithm.SupportedAlgorithm.valueOf(
+							getOption(args, 2, "-diff", "histogram").toUpperCase()));
+					runner.setOutputFormat(OutputFormat.valueOf(getOption(args, 2, "-output", "csv").toUpperCase()));
+					runner.run(BatchRunner.readManifest(new File(args[1])));
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+				break;
+			case "-server":
+				try {
+					final AnalysisServer server = new AnalysisServer();
+					server.setOutputDirectory(new File(getOption(args, 1, "-out", "server")));
+					server.setConcurrency(Integer.parseInt(getOption(args, 1, "-projects", "0")));
+					server.setWorkers(Integer.parseInt(getOption(args, 1, "-workers",
+							Runtime.getRuntime().availableProcessors() + "")));
+					server.setWarmProjects(Integer.parseInt(getOption(args, 1, "-warm", "4")));
+					server.setMemoryBudget(Long.parseLong(getOption(args, 1, "-memory", "0")) * 1024 * 1024);
+					server.setJiraThreads(Integer.parseInt(getOption(args, 1, "-jiraThreads", "1")));
+					server.setBinaryIssues(hasOption(args, 1, "-binaryIssues"));
+					server.start(Integer.parseInt(getOption(args, 1, "-port", AnalysisServer.DEFAULT_PORT + "")));
+					Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+				break;
 			default:
 				System.out.println("Commands are not in the right form! Please retry!");
 				break;
@@ -86,6 +159,60 @@ System.out.println("executing open szz with the following parameters");
 
 	}
 
+	/**
+	 * It returns the search URL of the Jira instance of a project URL such as
+	 * https://issues.apache.org/jira/projects/BCEL
+	 * @param jiraUrl
+	 * @return
+	 */
+	static String jiraSearchUrl(String jiraUrl) {
+		return jiraUrl.split("/jira/projects/")[0] + jiraAPI;
+	}
+
+	/**
+	 * It returns the value following an option flag, e.g. "-workers 8", 
+	 * looking after the positional arguments
+	 * @param args
+	 * @param name
+	 * @param defaultValue
+	 * @return
+	 */
+	private static String getOption(String[] args, String name, String defaultValue) {
+		return getOption(args, 4, name, defaultValue);
+	}
+
+	/**
+	 * Same as above, the options starting at index from
+	 */
+	private static String getOption(String[] args, int from, String name, String defaultValue) {
+		for (int i = from; i < args.length - 1; i++) {
+			if (args[i].equals(name))
+				return args[i + 1];
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * It checks whether a flag without value, e.g. "-full", was given
+	 * @param args
+	 * @param name
+	 * @return
+	 */
+	private static boolean hasOption(String[] args, String name) {
+		return hasOption(args, 4, name);
+	}
+
+	/**
+	 * Same as above, the options starting at index from
+	 */
+	private static boolean hasOption(String[] args, int from, String name) {
+		for (int i = from; i < args.length; i++) {
+			if (args[i].equals(name))
+				return true;
+		}
+		return false;
+	}
+
 	private static void clean(String jiraKey) {
 		for (File fileEntry : new File(".").listFiles()) {
 			if (fileEntry.getName().toLowerCase().contains(jiraKey.toLowerCase())) {
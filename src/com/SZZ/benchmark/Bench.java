@@ -0,0 +1,145 @@
+package com.SZZ.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Small benchmark runner used by the main-driven benchmarks of this package.
+ *
+ * Every benchmark runs for a warm-up period, then for a measurement period
+ * during which operations are timed in batches. Along with the average time
+ * per operation it reports the bytes allocated per operation by the running
+ * thread and the garbage collections that happened, as the JMH gc profiler
+ * does. Results of the operations are written to a volatile sink so that
+ * they cannot be optimized away.
+ */
+public class Bench {
+
+	/**
+	 * A benchmarked operation
+	 */
+	public interface Operation {
+		Object run() throws Exception;
+	}
+
+	public static volatile Object sink;
+
+	private final long warmupMillis;
+	private final long measureMillis;
+	private final String filter;
+
+	/**
+	 * @param warmupMillis
+	 * @param measureMillis
+	 * @param filter only the benchmarks whose name contains it are run, null for all
+	 */
+	public Bench(long warmupMillis, long measureMillis, String filter) {
+		this.warmupMillis = warmupMillis;
+		this.measureMillis = measureMillis;
+		this.filter = filter;
+	}
+
+	/**
+	 * It reads -warmup ms, -time ms and -filter name from the command line
+	 * @param args
+	 * @return
+	 */
+	public static Bench fromArgs(String[] args) {
+		long warmup = 2000;
+		long time = 5000;
+		String filter = null;
+		for (int i = 0; i + 1 < args.length; i++) {
+			if (args[i].equals("-warmup"))
+				warmup = Long.parseLong(args[i + 1]);
+			else if (args[i].equals("-time"))
+				time = Long.parseLong(args[i + 1]);
+			else if (args[i].equals("-filter"))
+				filter = args[i + 1];
+		}
+		return new Bench(warmup, time, filter);
+	}
+
+	/**
+	 * It gets the value of an option of the command line
+	 * @param args
+	 * @param name
+	 * @param defaultValue
+	 * @return
+	 */
+	public static String option(String[] args, String name, String defaultValue) {
+		for (int i = 0; i + 1 < args.length; i++)
+			if (args[i].equals(name))
+				return args[i + 1];
+		return defaultValue;
+	}
+
+	public static void printHeader() {
+		System.out.println(String.format("%-40s %10s %14s %14s %8s %8s", "Benchmark", "ops", "us/op", "B/op",
+				"gc", "gc ms"));
+	}
+
+	/**
+	 * It runs a benchmark and prints its line
+	 * @param name
+	 * @param operation
+	 * @throws Exception
+	 */
+	public void run(String name, Operation operation) throws Exception {
+		if (filter != null && !name.contains(filter))
+			return;
+		loop(operation, warmupMillis);
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		long gcCount = gcCount();
+		long gcTime = gcTime();
+		long allocated = allocatedBytes(threads);
+		long start = System.nanoTime();
+		long ops = loop(operation, measureMillis);
+		long elapsed = System.nanoTime() - start;
+		long bytes = allocatedBytes(threads) - allocated;
+
+		System.out.println(String.format("%-40s %10d %14.3f %14s %8d %8d", name, ops, elapsed / 1e3 / ops,
+				allocated < 0 ? "n/a" : (bytes / ops) + "", gcCount() - gcCount, gcTime() - gcTime));
+	}
+
+	/*
+	 * It runs batches of operations for the given time
+	 */
+	private long loop(Operation operation, long millis) throws Exception {
+		long end = System.nanoTime() + millis * 1000000L;
+		long ops = 0;
+		int batch = 1;
+		do {
+			for (int i = 0; i < batch; i++)
+				sink = operation.run();
+			ops += batch;
+			if (batch < 1024)
+				batch *= 2;
+		} while (System.nanoTime() < end);
+		return ops;
+	}
+
+	private static long allocatedBytes(ThreadMXBean threads) {
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean) threads;
+			if (t.isThreadAllocatedMemorySupported() && t.isThreadAllocatedMemoryEnabled())
+				return t.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			count += Math.max(0, gc.getCollectionCount());
+		return count;
+	}
+
+	private static long gcTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			time += Math.max(0, gc.getCollectionTime());
+		return time;
+	}
+}
@@ -0,0 +1,166 @@
+package com.SZZ.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.util.FileUtils;
+
+import com.SZZ.jiraAnalyser.entities.Issue;
+import com.SZZ.jiraAnalyser.entities.IssueStore;
+import com.SZZ.jiraAnalyser.entities.Link;
+import com.SZZ.jiraAnalyser.entities.Suspect;
+import com.SZZ.jiraAnalyser.entities.Transaction;
+import com.SZZ.jiraAnalyser.output.BinarySink;
+import com.SZZ.jiraAnalyser.output.Timestamps;
+
+/**
+ * Round trip of the results through BinarySink: rows are written then read
+ * back with BinarySink.read and compared with what was written.
+ *
+ * The rows come in runs sharing their commit, file and issue type, with null
+ * texts within and after the runs, over several blocks and an append of a
+ * second sink. A run of a repeated row must also take one byte per column.
+ * The check exits with status 1 on the first difference.
+ *
+ * Usage: BinarySinkCheck [-rows 10000] [-seed 1]
+ */
+public class BinarySinkCheck {
+
+	private static final String PROJECT = "CHECK";
+	private static final String[] TYPES = { "Bug", "Task", "Improvement", null };
+	private static final String[] FILES = { "src/A.java", "src/B.java", "src/c/C.java", null };
+
+	public static void main(String[] args) throws Exception {
+		int rows = Integer.parseInt(Bench.option(args, "-rows", "10000"));
+		Random random = new Random(Long.parseLong(Bench.option(args, "-seed", "1")));
+		Path storage = Files.createTempDirectory("szz-binary");
+		try {
+			File directory = storage.toFile();
+			IssueStore issues = IssueStore.loadPages(directory, PROJECT);
+			boolean ok = check(directory, "types", issues, Arrays.asList("Bug", "Bug", "Bug", null, "Task"), random);
+			List<String> types = new ArrayList<String>();
+			while (types.size() < rows) {
+				String type = TYPES[random.nextInt(TYPES.length)];
+				for (int n = 1 + random.nextInt(8); n > 0; n--)
+					types.add(type);
+			}
+			ok = ok && check(directory, "random", issues, types, random);
+			ok = ok && checkRun(directory, issues);
+			if (!ok)
+				System.exit(1);
+			System.out.println("Binary results read back as written");
+		} finally {
+			FileUtils.delete(storage.toFile(), FileUtils.RECURSIVE | FileUtils.RETRY);
+		}
+	}
+
+	/*
+	 * It writes a row per issue type, the first half then the second half
+	 * appended, and compares the rows read back
+	 */
+	private static boolean check(File directory, String token, IssueStore issues, List<String> types, Random random)
+			throws Exception {
+		List<String[]> fixing = new ArrayList<String[]>();
+		List<String[]> inducing = new ArrayList<String[]>();
+		int half = types.size() / 2;
+		write(directory, token, issues, types.subList(0, half), random, fixing, inducing, false);
+		write(directory, token, issues, types.subList(half, types.size()), random, fixing, inducing, true);
+		return compare(new File(directory, PROJECT + "_BugFixingCommit.bin"), fixing)
+				&& compare(new File(directory, token + "_BugInducingCommits.bin"), inducing);
+	}
+
+	private static void write(File directory, String token, IssueStore issues, List<String> types, Random random,
+			List<String[]> fixing, List<String[]> inducing, boolean append) throws Exception {
+		try (BinarySink sink = new BinarySink(directory, PROJECT, token, append)) {
+			Link link = null;
+			String file = null;
+			String suspect = null;
+			for (String type : types) {
+				if (link == null || random.nextInt(4) == 0) {
+					link = link(issues, random, type);
+					sink.bugFixingCommit(link);
+					fixing.add(new String[] { link.transaction.getId(), Timestamps.format(link.transaction.getTimeStamp().getTime()),
+							link.transaction.getComment(), PROJECT + "-" + link.issue.getId(),
+							Timestamps.format(link.issue.getOpen()), Timestamps.format(link.issue.getClose()),
+							link.issue.getTitle() });
+				}
+				link.issue = issue(link.issue.getId(), link.issue.getTitle(), type, link.issue.getOpen());
+				if (suspect == null || random.nextInt(3) == 0)
+					suspect = sha(random);
+				if (random.nextInt(3) == 0)
+					file = FILES[random.nextInt(FILES.length)];
+				Suspect s = new Suspect(suspect, new Date(link.issue.getOpen() - 1000), file);
+				sink.bugInducingCommit(link, s);
+				inducing.add(new String[] { link.transaction.getId(), Timestamps.format(link.transaction.getTimeStamp().getTime()),
+						file, suspect, Timestamps.format(s.getTs().getTime()), type });
+			}
+		}
+	}
+
+	/*
+	 * Five equal rows must take four bytes per column more than one row
+	 */
+	private static boolean checkRun(File directory, IssueStore issues) throws Exception {
+		long[] sizes = new long[2];
+		int[] counts = { 1, 5 };
+		for (int i = 0; i < 2; i++) {
+			String token = "run" + counts[i];
+			try (BinarySink sink = new BinarySink(directory, PROJECT, token, false)) {
+				Link link = link(issues, new Random(1), "Bug");
+				Suspect s = new Suspect(link.transaction.getId(), new Date(0), "src/A.java");
+				for (int n = 0; n < counts[i]; n++)
+					sink.bugInducingCommit(link, s);
+			}
+			sizes[i] = new File(directory, token + "_BugInducingCommits.bin").length();
+		}
+		if (sizes[1] - sizes[0] != 4 * 6) {
+			System.out.println("5 equal rows take " + (sizes[1] - sizes[0]) + " bytes more than 1, expected 24");
+			return false;
+		}
+		return true;
+	}
+
+	private static boolean compare(File file, List<String[]> expected) throws Exception {
+		List<String[]> rows = BinarySink.read(file);
+		if (rows.size() - 1 != expected.size()) {
+			System.out.println(file.getName() + ": " + (rows.size() - 1) + " rows read, " + expected.size() + " written");
+			return false;
+		}
+		for (int r = 0; r < expected.size(); r++) {
+			if (!Arrays.equals(rows.get(r + 1), expected.get(r))) {
+				System.out.println(file.getName() + " row " + r + ": read " + Arrays.toString(rows.get(r + 1))
+						+ ", written " + Arrays.toString(expected.get(r)));
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Link link(IssueStore issues, Random random, String type) {
+		long time = 1420070400000L + random.nextInt(1000000) * 1000L;
+		Transaction t = new Transaction(sha(random), new Date(time), "dev",
+				random.nextInt(5) == 0 ? "" : "fix " + random.nextInt(100), Collections.emptyList());
+		Link link = new Link(t, 1 + random.nextInt(500), issues);
+		link.issue = issue(link.number, random.nextInt(5) == 0 ? null : "issue " + link.number, type, time - 5000);
+		return link;
+	}
+
+	private static Issue issue(long id, String title, String type, long open) {
+		return new Issue(id, title, null, null, "dev", open, open + 1000, Collections.emptyList(),
+				Collections.emptyList(), type);
+	}
+
+	private static String sha(Random random) {
+		byte[] id = new byte[20];
+		random.nextBytes(id);
+		return ObjectId.fromRaw(id).getName();
+	}
+}
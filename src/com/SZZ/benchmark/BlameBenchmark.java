@@ -0,0 +1,143 @@
+package com.SZZ.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.eclipse.jgit.api.BlameCommand;
+import org.eclipse.jgit.blame.BlameResult;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.util.FileUtils;
+
+import com.SZZ.jiraAnalyser.git.Git;
+
+/**
+ * Compares the blame of a whole file with the blame of the lines removed by a
+ * fix, as done by Link.getSuspect.
+ *
+ * A repository is generated in a temporary directory with one large file
+ * edited by many commits, the last of which changes the lines then removed
+ * by a fix. All blames start at the parent of the fix; the blame cache is
+ * cleared before every region blame so that each iteration computes it again.
+ *
+ * The region blame stops as soon as the requested lines are attributed, so it
+ * is measured both for the recently changed lines removed by the fix and for
+ * lines unchanged since the first commit, which still need the whole history
+ * of the file.
+ *
+ * Usage: BlameBenchmark [lines] [commits] [iterations]
+ */
+public class BlameBenchmark {
+
+	static final String FILE = "Large.java";
+
+	public static void main(String[] args) throws Exception {
+		int lines = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int commits = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+		Path storage = Files.createTempDirectory("szz-blame");
+		try {
+			File repository = new File(storage.toFile(), "bench");
+			generate(repository, lines, commits, new Random(1));
+			int[] removed = { lines / 2, lines / 2 + 3 };
+			int[] old = { lines / 4, lines / 4 + 3 };
+
+			try (Git git = new Git(storage, new URL("file:///bench/bench.git"));
+					org.eclipse.jgit.api.Git jgit = org.eclipse.jgit.api.Git.open(repository)) {
+				String parent = git.getSession().resolve("HEAD~1").getName();
+				PrintWriter l = new PrintWriter(System.out);
+
+				// warm up
+				fullBlame(jgit, parent);
+				regionBlame(git, parent, removed, l);
+				regionBlame(git, parent, old, l);
+
+				long full = 0;
+				long region = 0;
+				long regionOld = 0;
+				for (int i = 0; i < iterations; i++) {
+					long start = System.nanoTime();
+					fullBlame(jgit, parent);
+					full += System.nanoTime() - start;
+					start = System.nanoTime();
+					regionBlame(git, parent, removed, l);
+					region += System.nanoTime() - start;
+					start = System.nanoTime();
+					regionBlame(git, parent, old, l);
+					regionOld += System.nanoTime() - start;
+				}
+				System.out.println(lines + " lines, " + commits + " commits, " + (removed[1] - removed[0])
+						+ " removed lines, " + iterations + " iterations");
+				System.out.println(String.format("full blame:                %.1f ms/op", full / 1e6 / iterations));
+				System.out.println(String.format("region blame, recent lines: %.1f ms/op", region / 1e6 / iterations));
+				System.out.println(String.format("region blame, old lines:    %.1f ms/op", regionOld / 1e6 / iterations));
+			}
+		} finally {
+			FileUtils.delete(storage.toFile(), FileUtils.RECURSIVE | FileUtils.RETRY);
+		}
+	}
+
+	private static void fullBlame(org.eclipse.jgit.api.Git jgit, String commit) throws Exception {
+		BlameCommand blamer = jgit.blame();
+		blamer.setStartCommit(ObjectId.fromString(commit));
+		blamer.setFilePath(FILE);
+		BlameResult result = blamer.call();
+		result.getSourceCommit(0);
+	}
+
+	private static void regionBlame(Git git, String commit, int[] removed, PrintWriter l) {
+		git.getBlameCache().clear();
+		if (git.getBlame(commit, FILE, removed) == null)
+			l.println("Blame failed");
+	}
+
+	/*
+	 * It creates the repository: an initial file, commits each editing a few
+	 * random lines of the second half, a commit changing the lines of the
+	 * fix and the fix removing them
+	 */
+	static void generate(File directory, int lines, int commits, Random random) throws Exception {
+		String[] content = new String[lines];
+		for (int i = 0; i < lines; i++)
+			content[i] = "\tint field" + i + " = " + i + ";";
+		try (org.eclipse.jgit.api.Git jgit = org.eclipse.jgit.api.Git.init().setDirectory(directory).call()) {
+			PersonIdent ident = new PersonIdent("bench", "bench@example.org");
+			commit(jgit, directory, content, ident, "initial");
+			for (int c = 0; c < commits; c++) {
+				for (int e = 0; e < 5; e++) {
+					int line = lines / 2 + random.nextInt(lines / 2);
+					content[line] = "\tint field" + line + " = " + random.nextInt() + ";";
+				}
+				commit(jgit, directory, content, ident, "change " + c);
+			}
+			for (int i = lines / 2; i < lines / 2 + 3; i++)
+				content[i] = "\tint field" + i + " = -1;";
+			commit(jgit, directory, content, ident, "bug");
+			String[] fixed = new String[lines - 3];
+			System.arraycopy(content, 0, fixed, 0, lines / 2);
+			System.arraycopy(content, lines / 2 + 3, fixed, lines / 2, lines - lines / 2 - 3);
+			commit(jgit, directory, fixed, ident, "fix");
+		}
+	}
+
+	private static void commit(org.eclipse.jgit.api.Git jgit, File directory, String[] content, PersonIdent ident,
+			String message) throws Exception {
+		write(new File(directory, FILE), content);
+		jgit.add().addFilepattern(FILE).call();
+		jgit.commit().setMessage(message).setAuthor(ident).setCommitter(ident).call();
+	}
+
+	private static void write(File file, String[] content) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (String line : content)
+			sb.append(line).append('\n');
+		Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+	}
+}
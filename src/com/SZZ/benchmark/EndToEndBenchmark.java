@@ -0,0 +1,95 @@
+package com.SZZ.benchmark;
+
+import java.io.File;
+import java.util.Map;
+
+import com.SZZ.jiraAnalyser.Application;
+import com.SZZ.jiraAnalyser.entities.Metrics;
+import com.SZZ.jiraAnalyser.git.JiraRetriever;
+import com.SZZ.jiraAnalyser.output.OutputFormat;
+
+/**
+ * End to end benchmark of a whole mining run on a synthetic project.
+ *
+ * FixtureGenerator writes a repository and its Jira pages in the fixture
+ * directory, JiraStubServer serves the pages on the loopback interface, then
+ * the issues are downloaded with JiraRetriever and the project is mined with
+ * Application.mineData through a file:// URL, as SZZApplication -all does.
+ * No network access is needed and the same options always give the same
+ * project, so runs of different versions can be compared.
+ *
+ * Like the application, it writes its results in the working directory,
+ * which must not hold the files of a previous run of the same key. The
+ * duration of each stage is printed with the commits and links processed
+ * per second, then the duration of the whole run; stages overlap. The
+ * other measures of the run are saved in SZZBENCH_metrics.json.
+ *
+ * Usage: EndToEndBenchmark [-dir fixture] [-key SZZBENCH] [-commits 2000]
+ *        [-files 200] [-lines 300] [-fixes 0.3] [-issues 500] [-seed 1]
+ *        [-workers 1] [-jiraThreads 1] [-output csv|jsonl|binary]
+ */
+public class EndToEndBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		File directory = new File(Bench.option(args, "-dir", "fixture")).getAbsoluteFile();
+		FixtureGenerator generator = new FixtureGenerator()
+				.setKey(Bench.option(args, "-key", "SZZBENCH"))
+				.setCommits(Integer.parseInt(Bench.option(args, "-commits", "2000")))
+				.setFiles(Integer.parseInt(Bench.option(args, "-files", "200")))
+				.setLines(Integer.parseInt(Bench.option(args, "-lines", "300")))
+				.setFixDensity(Double.parseDouble(Bench.option(args, "-fixes", "0.3")))
+				.setIssues(Integer.parseInt(Bench.option(args, "-issues", "500")))
+				.setSeed(Long.parseLong(Bench.option(args, "-seed", "1")));
+		int workers = Integer.parseInt(Bench.option(args, "-workers", "1"));
+		int jiraThreads = Integer.parseInt(Bench.option(args, "-jiraThreads", "1"));
+		String key = generator.getKey();
+
+		if (new File(key).exists() || new File(key + "_0.csv").exists()
+				|| new File(key + "_state.properties").exists()) {
+			System.out.println("The working directory holds a previous run of " + key
+					+ ", run the benchmark from an empty directory");
+			return;
+		}
+		long start = System.currentTimeMillis();
+		if (!generator.repository(directory).exists())
+			generator.generate(directory);
+		long generate = System.currentTimeMillis() - start;
+
+		Metrics metrics = new Metrics();
+		start = System.currentTimeMillis();
+		try (JiraStubServer server = new JiraStubServer(generator.jira(directory), jiraThreads);
+				JiraRetriever retriever = new JiraRetriever(server.getUrl(), key)) {
+			retriever.setConcurrency(jiraThreads);
+			retriever.setMetrics(metrics);
+			retriever.updateIssues();
+		}
+
+		Application application = new Application();
+		application.setWorkers(workers);
+		application.setMetrics(metrics);
+		application.setOutputFormat(OutputFormat.valueOf(Bench.option(args, "-output", "csv").toUpperCase()));
+		String repository = "file://" + generator.repository(directory).getPath();
+		if (!application.mineData(repository, "http://127.0.0.1/jira/projects/" + key, key, key)) {
+			System.out.println("Mining failed");
+			return;
+		}
+		long total = System.currentTimeMillis() - start;
+
+		int commits = application.getCommitCount();
+		int links = application.getLinkCount();
+		System.out.println();
+		System.out.println(generator.getCommits() + " commits, " + generator.getIssues() + " issues, " + workers
+				+ " workers");
+		System.out.println(String.format("%-12s %10s %12s %12s", "stage", "seconds", "commits/s", "links/s"));
+		System.out.println(String.format("%-12s %10.3f", "generate", generate / 1e3));
+		for (Map.Entry<String, Long> stage : metrics.getStages().entrySet()) {
+			long millis = Math.max(1, stage.getValue());
+			System.out.println(String.format("%-12s %10.3f %12.1f %12.1f", stage.getKey(), stage.getValue() / 1e3,
+					commits * 1e3 / millis, links * 1e3 / millis));
+		}
+		System.out.println(String.format("%-12s %10.3f %12.1f %12.1f", "total", total / 1e3,
+				commits * 1e3 / Math.max(1, total), links * 1e3 / Math.max(1, total)));
+		System.out.println(commits + " commits read, " + links + " links kept, "
+				+ metrics.getCounter("jira.issues") + " issues downloaded");
+	}
+}
@@ -0,0 +1,298 @@
+package com.SZZ.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Generator of a synthetic project: a local git repository and the Jira
+ * SearchRequest.xml pages of its issues, built from a seed so that the same
+ * settings always give the same project.
+ *
+ * The repository is a bare repository named KEY.git, so that it can be
+ * cloned through a file:// URL as the code expects. Its first commit adds
+ * every file; each next commit replaces a few lines of one to three files.
+ * A share of the commits, the fix density, reference an issue in their
+ * message as "KEY-n: summary", the summary being the one of the issue. The
+ * issue is assigned to the author of the fix and opened before it, so that
+ * the links found on it are kept.
+ *
+ * Jira pages are written in the jira directory: page-N.xml holds issues
+ * N * 1000 + 1 to (N + 1) * 1000 and latest.xml the issue with the highest
+ * number, as returned for a query by descending key. See JiraStubServer.
+ */
+public class FixtureGenerator {
+
+	public static final int PAGE_SIZE = 1000;
+
+	private static final String[] WORDS = { "parser", "cache", "reader", "writer", "index", "module", "handler",
+			"config", "stream", "buffer", "session", "token", "lexer", "schema", "query", "plan", "node", "tree",
+			"visitor", "loader", "resolver", "scheduler", "encoder", "decoder" };
+	private static final long START = 1420070400000L;
+	private static final long HOUR = 60L * 60 * 1000;
+	private static final long DAY = 24 * HOUR;
+
+	private String key = "SZZBENCH";
+	private int commits = 2000;
+	private int files = 200;
+	private int lines = 300;
+	private double fixDensity = 0.3;
+	private int issues = 500;
+	private long seed = 1;
+
+	public FixtureGenerator setKey(String key) {
+		this.key = key;
+		return this;
+	}
+
+	public FixtureGenerator setCommits(int commits) {
+		this.commits = Math.max(1, commits);
+		return this;
+	}
+
+	public FixtureGenerator setFiles(int files) {
+		this.files = Math.max(1, files);
+		return this;
+	}
+
+	/**
+	 * @param lines initial number of lines of every file
+	 * @return
+	 */
+	public FixtureGenerator setLines(int lines) {
+		this.lines = Math.max(10, lines);
+		return this;
+	}
+
+	/**
+	 * @param fixDensity share of the commits referencing an issue, from 0 to 1
+	 * @return
+	 */
+	public FixtureGenerator setFixDensity(double fixDensity) {
+		this.fixDensity = fixDensity;
+		return this;
+	}
+
+	public FixtureGenerator setIssues(int issues) {
+		this.issues = Math.max(1, issues);
+		return this;
+	}
+
+	public FixtureGenerator setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public int getCommits() {
+		return commits;
+	}
+
+	public int getIssues() {
+		return issues;
+	}
+
+	/**
+	 * @param directory
+	 * @return the repository generated in directory
+	 */
+	public File repository(File directory) {
+		return new File(directory, key + ".git");
+	}
+
+	/**
+	 * @param directory
+	 * @return the Jira pages generated in directory
+	 */
+	public File jira(File directory) {
+		return new File(directory, "jira");
+	}
+
+	/**
+	 * It generates the repository and the Jira pages in directory, which must
+	 * not contain a previous fixture
+	 * @param directory
+	 * @throws Exception
+	 */
+	public void generate(File directory) throws Exception {
+		Random random = new Random(seed);
+		String[] summaries = new String[issues + 1];
+		for (int n = 1; n <= issues; n++)
+			summaries[n] = word(random) + " " + word(random) + " fails when the " + word(random) + " is empty";
+		String[] assignees = new String[issues + 1];
+		long[] opened = new long[issues + 1];
+		long[] resolved = new long[issues + 1];
+
+		File repository = repository(directory);
+		try (org.eclipse.jgit.api.Git git = org.eclipse.jgit.api.Git.init().setBare(true).setDirectory(repository)
+				.call()) {
+			Repository repo = git.getRepository();
+			List<List<String>> contents = new ArrayList<List<String>>();
+			String[] paths = new String[files];
+			ObjectId[] blobs = new ObjectId[files];
+			int counter = 0;
+			for (int f = 0; f < files; f++) {
+				// numbered names, so that the paths are sorted as a tree needs
+				String name = String.format("C%05d%s", f, capitalize(word(random)));
+				paths[f] = "src/main/java/org/fixture/" + name + ".java";
+				List<String> content = new ArrayList<String>();
+				content.add("package org.fixture;");
+				content.add("public class " + name + " {");
+				for (int i = 0; i < lines; i++)
+					content.add("\tint v" + (counter++) + " = " + random.nextInt(1000) + ";");
+				content.add("}");
+				contents.add(content);
+			}
+
+			ObjectId parent = null;
+			try (ObjectInserter inserter = repo.newObjectInserter()) {
+				for (int c = 0; c < commits; c++) {
+					long time = START + c * HOUR;
+					String author = "Author " + random.nextInt(20);
+					String message;
+					int[] changed;
+					if (c == 0) {
+						changed = new int[files];
+						for (int f = 0; f < files; f++)
+							changed[f] = f;
+						message = "Initial import";
+					} else {
+						changed = new int[1 + random.nextInt(Math.min(3, files))];
+						for (int i = 0; i < changed.length; i++) {
+							changed[i] = random.nextInt(files);
+							counter = edit(contents.get(changed[i]), random, counter);
+						}
+						if (random.nextDouble() < fixDensity) {
+							int n = 1 + random.nextInt(issues);
+							message = key + "-" + n + ": fix " + summaries[n];
+							if (assignees[n] == null) {
+								assignees[n] = author;
+								opened[n] = time - (1 + random.nextInt(30)) * DAY;
+							}
+							resolved[n] = time + (1 + random.nextInt(10)) * DAY;
+						} else
+							message = capitalize(word(random)) + " " + word(random) + " and " + word(random);
+					}
+					for (int f : changed)
+						blobs[f] = inserter.insert(Constants.OBJ_BLOB, toBytes(contents.get(f)));
+					parent = commit(inserter, paths, blobs, parent, author, time, message);
+				}
+				inserter.flush();
+			}
+			RefUpdate update = repo.updateRef(Constants.R_HEADS + Constants.MASTER);
+			update.setNewObjectId(parent);
+			update.setForceUpdate(true);
+			update.update();
+		}
+		writeJira(jira(directory), summaries, assignees, opened, resolved, random);
+	}
+
+	private ObjectId commit(ObjectInserter inserter, String[] paths, ObjectId[] blobs, ObjectId parent,
+			String author, long time, String message) throws IOException {
+		DirCache index = DirCache.newInCore();
+		DirCacheBuilder builder = index.builder();
+		for (int i = 0; i < paths.length; i++) {
+			DirCacheEntry entry = new DirCacheEntry(paths[i]);
+			entry.setFileMode(FileMode.REGULAR_FILE);
+			entry.setObjectId(blobs[i]);
+			builder.add(entry);
+		}
+		builder.finish();
+		PersonIdent ident = new PersonIdent(author, author.replace(' ', '.').toLowerCase() + "@example.org",
+				new Date(time), TimeZone.getTimeZone("UTC"));
+		CommitBuilder commit = new CommitBuilder();
+		commit.setTreeId(index.writeTree(inserter));
+		if (parent != null)
+			commit.setParentId(parent);
+		commit.setAuthor(ident);
+		commit.setCommitter(ident);
+		commit.setMessage(message);
+		return inserter.insert(commit);
+	}
+
+	/*
+	 * It replaces a block of 1 to 5 lines of the class body by 1 to 5 new lines
+	 */
+	private int edit(List<String> content, Random random, int counter) {
+		int body = content.size() - 3;
+		int start = 2 + random.nextInt(Math.max(1, body));
+		int removed = Math.min(1 + random.nextInt(5), content.size() - 1 - start);
+		for (int i = 0; i < removed; i++)
+			content.remove(start);
+		int added = 1 + random.nextInt(5);
+		for (int i = 0; i < added; i++)
+			content.add(start, "\tint v" + (counter++) + " = " + random.nextInt(1000) + ";");
+		return counter;
+	}
+
+	private void writeJira(File directory, String[] summaries, String[] assignees, long[] opened, long[] resolved,
+			Random random) throws IOException {
+		directory.mkdirs();
+		SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z", Locale.ENGLISH);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		for (int page = 0; page * PAGE_SIZE < issues; page++) {
+			try (PrintWriter out = new PrintWriter(new File(directory, "page-" + page + ".xml"), "UTF-8")) {
+				out.println("<rss version=\"0.92\"><channel>");
+				for (int n = page * PAGE_SIZE + 1; n <= Math.min(issues, (page + 1) * PAGE_SIZE); n++)
+					out.println(item(n, summaries, assignees, opened, resolved, random, format));
+				out.println("</channel></rss>");
+			}
+		}
+		try (PrintWriter out = new PrintWriter(new File(directory, "latest.xml"), "UTF-8")) {
+			out.println("<rss version=\"0.92\"><channel>");
+			out.println(item(issues, summaries, assignees, opened, resolved, random, format));
+			out.println("</channel></rss>");
+		}
+	}
+
+	private String item(int n, String[] summaries, String[] assignees, long[] opened, long[] resolved,
+			Random random, SimpleDateFormat format) {
+		long open = opened[n] != 0 ? opened[n] : START + random.nextInt(1000) * HOUR;
+		long close = resolved[n] != 0 ? resolved[n] : open + (1 + random.nextInt(30)) * DAY;
+		String assignee = assignees[n] != null ? assignees[n] : "Author " + random.nextInt(20);
+		return "<item><title>[" + key + "-" + n + "] " + summaries[n] + "</title><key>" + key + "-" + n
+				+ "</key><type>Bug</type><priority>Major</priority><status>Closed</status>"
+				+ "<resolution>Fixed</resolution><assignee>" + assignee + "</assignee><created>"
+				+ format.format(new Date(open)) + "</created><resolved>" + format.format(new Date(close))
+				+ "</resolved><comments><comment>Seen in the " + word(random) + "</comment></comments>"
+				+ "<attachments></attachments></item>";
+	}
+
+	private static byte[] toBytes(List<String> content) {
+		StringBuilder sb = new StringBuilder();
+		for (String line : content)
+			sb.append(line).append('\n');
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String word(Random random) {
+		return WORDS[random.nextInt(WORDS.length)];
+	}
+
+	private static String capitalize(String word) {
+		return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+	}
+}
@@ -0,0 +1,161 @@
+package com.SZZ.benchmark;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.jgit.util.FileUtils;
+
+import com.SZZ.jiraAnalyser.entities.Issue;
+import com.SZZ.jiraAnalyser.entities.IssueStore;
+import com.SZZ.jiraAnalyser.entities.Link;
+import com.SZZ.jiraAnalyser.entities.Transaction;
+import com.SZZ.jiraAnalyser.git.CommitLog;
+import com.SZZ.jiraAnalyser.git.Git;
+
+/**
+ * Benchmarks of the mining hot paths on the fixed inputs of the benchmarks
+ * directory:
+ *  - bench-log.txt: git log of 500 commits in the format of Git.saveLog()
+ *  - BENCH_0.csv:   page of 300 Jira issues in the format of JiraRetriever
+ *  - parser.diff:   diff of one file with 60 hunks, as written by Git.getDiff()
+ * gitlog.parse measures the former parsing of that log file; the in-process
+ * CommitLog that replaced it is measured on a project generated by
+ * FixtureGenerator. Diff and blame are measured on a repository generated
+ * with a fixed seed.
+ *
+ * Usage: HotPathBenchmark [-inputs dir] [-warmup ms] [-time ms] [-filter name]
+ */
+public class HotPathBenchmark {
+
+	private static final String PROJECT = "BENCH";
+
+	public static void main(String[] args) throws Exception {
+		File inputs = new File(Bench.option(args, "-inputs", "benchmarks"));
+		Bench bench = Bench.fromArgs(args);
+
+		Git logGit = new Git(inputs.toPath(), new URL("file:///bench/bench-log.git"));
+		List<Transaction> log = logGit.getCommits();
+		IssueStore issues = IssueStore.loadPages(inputs, PROJECT);
+		String diff = new String(Files.readAllBytes(new File(inputs, "parser.diff").toPath()), StandardCharsets.UTF_8);
+
+		List<Transaction> fixes = new ArrayList<Transaction>();
+		List<Long> fixIds = new ArrayList<Long>();
+		List<String[]> pairs = new ArrayList<String[]>();
+		for (Transaction t : log) {
+			Transaction copy = copy(t);
+			if (!copy.hasBugId())
+				continue;
+			for (long id : copy.getBugIds()) {
+				fixes.add(copy);
+				fixIds.add(id);
+				Issue issue = issues.get(id);
+				if (issue != null)
+					pairs.add(new String[] { copy.getComment(), issue.getTitle().toLowerCase() });
+			}
+		}
+		System.out.println(log.size() + " commits, " + fixes.size() + " links, " + pairs.size() + " issue titles");
+
+		Bench.printHeader();
+		bench.run("gitlog.parse", () -> logGit.getCommits());
+		bench.run("transaction.hasBugId", () -> {
+			int n = 0;
+			for (Transaction t : log)
+				if (copy(t).hasBugId())
+					n++;
+			return n;
+		});
+		bench.run("link.longestCommonSubstrings", () -> {
+			int n = 0;
+			for (String[] pair : pairs)
+				n += Link.longestCommonSubstrings(pair[0], pair[1]).length();
+			return n;
+		});
+		bench.run("link.longestCommonSubstringsLongerThan", () -> {
+			int n = 0;
+			for (String[] pair : pairs)
+				if (Link.longestCommonSubstringsLongerThan(pair[0], pair[1], 20))
+					n++;
+			return n;
+		});
+		bench.run("git.getLinesMinus", () -> logGit.getLinesMinus(diff));
+		bench.run("link.new", () -> {
+			List<Link> links = new ArrayList<Link>(fixes.size());
+			for (int i = 0; i < fixes.size(); i++)
+				links.add(new Link(fixes.get(i), fixIds.get(i), issues));
+			return links;
+		});
+		commitLogBenchmarks(bench);
+		repositoryBenchmarks(bench);
+	}
+
+	/*
+	 * Walk of the whole history of a generated project of 500 commits
+	 */
+	private static void commitLogBenchmarks(Bench bench) throws Exception {
+		Path storage = Files.createTempDirectory("szz-bench-log");
+		try {
+			FixtureGenerator generator = new FixtureGenerator().setKey(PROJECT).setCommits(500).setFiles(100)
+					.setLines(100);
+			File fixture = new File(storage.toFile(), "fixture");
+			generator.generate(fixture);
+			try (Git git = new Git(storage, new URL("file://" + generator.repository(fixture).getPath()))) {
+				git.cloneRepository();
+				bench.run("git.walkCommits", () -> {
+					int files = 0;
+					try (CommitLog commits = git.walkCommits()) {
+						for (Transaction t : commits)
+							files += t.getFiles().size();
+					}
+					return files;
+				});
+			}
+		} finally {
+			FileUtils.delete(storage.toFile(), FileUtils.RECURSIVE | FileUtils.RETRY);
+		}
+	}
+
+	/*
+	 * Diff and blame on a generated repository of one 5000 lines file
+	 */
+	private static void repositoryBenchmarks(Bench bench) throws Exception {
+		Path storage = Files.createTempDirectory("szz-bench");
+		try (Git git = new Git(storage, new URL("file:///bench/bench.git"))) {
+			int lines = 5000;
+			BlameBenchmark.generate(new File(storage.toFile(), "bench"), lines, 100, new Random(1));
+			List<String> commits = new ArrayList<String>();
+			for (int i = 0; i < 100; i++)
+				commits.add(git.getSession().resolve("HEAD~" + i).getName());
+			String parent = commits.get(1);
+			int[] recent = { lines / 2, lines / 2 + 3 };
+			int[] file = { 0, lines };
+
+			int[] next = { 0 };
+			// more commits than diffs cached, so that every diff is computed
+			bench.run("git.getDeletedLines", () -> {
+				String commit = commits.get(next[0]++ % commits.size());
+				return git.getDeletedLines(commit, BlameBenchmark.FILE, null);
+			});
+			bench.run("git.getBlame.removedLines", () -> {
+				git.getBlameCache().clear();
+				return git.getBlame(parent, BlameBenchmark.FILE, recent);
+			});
+			bench.run("git.getBlame.file", () -> {
+				git.getBlameCache().clear();
+				return git.getBlame(parent, BlameBenchmark.FILE, file);
+			});
+		} finally {
+			FileUtils.delete(storage.toFile(), FileUtils.RECURSIVE | FileUtils.RETRY);
+		}
+	}
+
+	private static Transaction copy(Transaction t) {
+		return new Transaction(t.getId(), t.getTimeStamp(), t.getAuthor(), t.getComment(), t.getFiles());
+	}
+}
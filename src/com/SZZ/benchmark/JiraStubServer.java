@@ -0,0 +1,100 @@
+package com.SZZ.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP server answering the SearchRequest.xml queries of JiraRetriever
+ * with the pages written by FixtureGenerator:
+ *  - a query by descending key gets latest.xml
+ *  - a query of updated issues gets an empty channel
+ *  - any other query gets the page of its pager/start, or an empty channel
+ *    past the last page
+ * It listens on the loopback interface, on a free port.
+ */
+public class JiraStubServer implements AutoCloseable {
+
+	private static final Pattern START = Pattern.compile("pager/start=(\\d+)");
+	private static final byte[] EMPTY = "<rss version=\"0.92\"><channel></channel></rss>"
+			.getBytes(StandardCharsets.UTF_8);
+
+	private final File directory;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final AtomicInteger requests = new AtomicInteger();
+
+	/**
+	 * It starts the server
+	 * @param directory the jira directory of a fixture
+	 * @param threads
+	 * @throws IOException
+	 */
+	public JiraStubServer(File directory, int threads) throws IOException {
+		this.directory = directory;
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", this::handle);
+		this.executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * @return the URL to give to JiraRetriever
+	 */
+	public String getUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/sr/SearchRequest.xml";
+	}
+
+	/**
+	 * @return the number of requests answered
+	 */
+	public int getRequests() {
+		return requests.get();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String query = exchange.getRequestURI().getRawQuery();
+			byte[] body;
+			if (query == null || query.contains("updated"))
+				body = EMPTY;
+			else if (query.contains("DESC"))
+				body = read(new File(directory, "latest.xml"));
+			else {
+				Matcher m = START.matcher(query);
+				int start = m.find() ? Integer.parseInt(m.group(1)) : 0;
+				body = read(new File(directory, "page-" + (start / FixtureGenerator.PAGE_SIZE) + ".xml"));
+			}
+			exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=UTF-8");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+			requests.incrementAndGet();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static byte[] read(File file) throws IOException {
+		return file.exists() ? Files.readAllBytes(file.toPath()) : EMPTY;
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+}
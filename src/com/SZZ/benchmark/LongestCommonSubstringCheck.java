@@ -0,0 +1,104 @@
+package com.SZZ.benchmark;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import com.SZZ.jiraAnalyser.entities.Link;
+
+/**
+ * Compares Link.longestCommonSubstrings and
+ * Link.longestCommonSubstringsLongerThan with the former implementation,
+ * which filled the whole table of the two strings.
+ *
+ * Random pairs of strings are drawn from small alphabets, so that they share
+ * many substrings, and half of them get a common part inserted, so that
+ * their longest common substrings are around the 20 characters checked by
+ * Link. Every pair is checked with both strings in both orders and with the
+ * limits from 0 to 30. The check exits with status 1 on the first mismatch.
+ *
+ * Usage: LongestCommonSubstringCheck [-pairs 20000] [-length 60] [-seed 1]
+ */
+public class LongestCommonSubstringCheck {
+
+	public static void main(String[] args) {
+		int pairs = Integer.parseInt(Bench.option(args, "-pairs", "20000"));
+		int length = Integer.parseInt(Bench.option(args, "-length", "60"));
+		long seed = Long.parseLong(Bench.option(args, "-seed", "1"));
+		Random random = new Random(seed);
+
+		for (int n = 0; n < pairs; n++) {
+			String alphabet = "ab cdefghij".substring(0, 2 + random.nextInt(10));
+			String s = randomString(random, alphabet, random.nextInt(length + 1));
+			String t = randomString(random, alphabet, random.nextInt(length + 1));
+			if (random.nextBoolean()) {
+				String common = randomString(random, alphabet, 15 + random.nextInt(10));
+				s = insert(random, s, common);
+				t = insert(random, t, common);
+			}
+			if (!check(s, t) || !check(t, s)) {
+				System.out.println("Mismatch after " + n + " pairs with seed " + seed);
+				System.exit(1);
+			}
+		}
+		System.out.println(pairs + " pairs checked, no mismatch");
+	}
+
+	private static boolean check(String s, String t) {
+		String expected = oldLongestCommonSubstrings(s, t);
+		String actual = Link.longestCommonSubstrings(s, t);
+		if (!expected.equals(actual)) {
+			System.out.println("longestCommonSubstrings(\"" + s + "\", \"" + t + "\") = " + actual + ", expected "
+					+ expected);
+			return false;
+		}
+		for (int limit = 0; limit <= 30; limit++) {
+			boolean longer = expected.length() > limit;
+			if (Link.longestCommonSubstringsLongerThan(s, t, limit) != longer) {
+				System.out.println("longestCommonSubstringsLongerThan(\"" + s + "\", \"" + t + "\", " + limit + ") = "
+						+ !longer + ", expected " + longer + " for " + expected);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String randomString(Random random, String alphabet, int length) {
+		StringBuilder sb = new StringBuilder(length);
+		for (int i = 0; i < length; i++)
+			sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		return sb.toString();
+	}
+
+	private static String insert(Random random, String s, String part) {
+		int at = random.nextInt(s.length() + 1);
+		return s.substring(0, at) + part + s.substring(at);
+	}
+
+	/*
+	 * The former Link.longestCommonSubstrings
+	 */
+	static String oldLongestCommonSubstrings(String s, String t) {
+		int[][] table = new int[s.length()][t.length()];
+		int longest = 0;
+		Set<String> result = new HashSet<>();
+
+		for (int i = 0; i < s.length(); i++) {
+			for (int j = 0; j < t.length(); j++) {
+				if (s.charAt(i) != t.charAt(j)) {
+					continue;
+				}
+
+				table[i][j] = (i == 0 || j == 0) ? 1 : 1 + table[i - 1][j - 1];
+				if (table[i][j] > longest) {
+					longest = table[i][j];
+					result.clear();
+				}
+				if (table[i][j] == longest) {
+					result.add(s.substring(i - longest + 1, i + 1));
+				}
+			}
+		}
+		return result.toString();
+	}
+}
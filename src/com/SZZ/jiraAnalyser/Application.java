@@ -2,100 +2,430 @@ package com.SZZ.jiraAnalyser;
 
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.eclipse.jgit.diff.DiffAlgorithm;
 
 import com.SZZ.jiraAnalyser.entities.*;
-import com.SZZ.jiraAnalyser.git.JiraRetriever;
+import com.SZZ.jiraAnalyser.git.Git;
+import com.SZZ.jiraAnalyser.output.AsyncResultSink;
+import com.SZZ.jiraAnalyser.output.OutputFormat;
+import com.SZZ.jiraAnalyser.output.ResultSink;
 
 public class Application {
 	
-	
+	/*
+	 * Capacities of the queues between the stages of mineData: commits with
+	 * a bug id waiting for their links, links waiting for their suspects
+	 */
+	private static final int COMMIT_QUEUE_SIZE = 1024;
+	private static final int LINK_QUEUE_SIZE = 256;
 	
 	public  URL sourceCodeRepository;
 	public  URL bugTracker;
 	
 	private final TransactionManager transactionManager = new TransactionManager();
-	private final LinkManager linkManager = new LinkManager();
     public boolean hasFinished = false;
     
     private String projectName;
+    
+    private int workers = 1;
+    
+    private ExecutorService sharedPool = null;
+    
+    private File directory = null;
+    
+    private long blameCacheBudget = 0;
+    
+    private IssueStore issues = null;
+    
+    private boolean incremental = true;
+    
+    private DiffAlgorithm.SupportedAlgorithm diffAlgorithm = DiffAlgorithm.SupportedAlgorithm.HISTOGRAM;
+    
+    private Metrics metrics = new Metrics();
+    
+    private File metricsFile = null;
+    
+    private long metricsInterval = 0;
+    
+    private OutputFormat outputFormat = OutputFormat.CSV;
+    
+    private volatile ResultSink results = null;
+    
+    private int commitCount = 0;
+    
+    private int linkCount = 0;
 	
     
     public Application(){}
+    
+    /**
+     * It sets the number of threads calculating bug inducing commits.
+     * With 1 (default) links are processed sequentially.
+     * @param workers
+     */
+    public void setWorkers(int workers){
+    	this.workers = Math.max(1, workers);
+    }
+    
+    public int getWorkers(){
+    	return this.workers;
+    }
+    
+    /**
+     * It makes the bug inducing commits calculated by a pool shared with
+     * other analyses instead of the workers of this one. The pool is not
+     * shut down at the end of mineData.
+     * @param pool null (default) to use the workers
+     */
+    public void setSharedPool(ExecutorService pool){
+    	this.sharedPool = pool;
+    }
+    
+    /**
+     * It sets where the repository, the Jira pages, the state and the results
+     * of the project are kept
+     * @param directory null (default) for the working directory
+     */
+    public void setDirectory(File directory){
+    	this.directory = directory == null ? null : directory.getAbsoluteFile();
+    	transactionManager.setDirectory(this.directory);
+    }
+    
+    public File getDirectory(){
+    	return this.directory;
+    }
+    
+    /**
+     * It makes mineData read the repository with a Git kept open between
+     * analyses, whose session and caches are reused and left open
+     * @param git null (default) to open the repository for each analysis
+     */
+    public void setGit(Git git){
+    	transactionManager.setGit(git);
+    }
+    
+    /**
+     * It makes mineData link the commits to issues already loaded instead of
+     * loading them from the files of the project
+     * @param issues null (default) to load them
+     */
+    public void setIssues(IssueStore issues){
+    	this.issues = issues;
+    }
+    
+    /**
+     * It sets the memory budget of the blame cache of the repository
+     * @param bytes 0 (default) for BlameCache.DEFAULT_BUDGET
+     */
+    public void setBlameCacheBudget(long bytes){
+    	this.blameCacheBudget = Math.max(0, bytes);
+    }
+    
+    /**
+     * When enabled (default) and a previous run completed, only the commits
+     * added since that run are analysed and results are appended to the
+     * existing files. When disabled the whole history is analysed again.
+     * @param incremental
+     */
+    public void setIncremental(boolean incremental){
+    	this.incremental = incremental;
+    }
+    
+    /**
+     * It selects the diff algorithm finding removed lines (Histogram by default)
+     * @param diffAlgorithm
+     */
+    public void setDiffAlgorithm(DiffAlgorithm.SupportedAlgorithm diffAlgorithm){
+    	this.diffAlgorithm = diffAlgorithm;
+    }
 		
 	
+    /**
+     * It sets where the run is measured, e.g. to share it with the
+     * JiraRetriever of the project
+     * @param metrics
+     */
+    public void setMetrics(Metrics metrics){
+    	this.metrics = metrics;
+    }
+    
+    public Metrics getMetrics(){
+    	return this.metrics;
+    }
+    
+    /**
+     * It sets the file the measures are written to at the end of mineData,
+     * JSON or Prometheus text if its name ends with .prom (default
+     * projectName_metrics.json)
+     * @param metricsFile
+     */
+    public void setMetricsFile(File metricsFile){
+    	this.metricsFile = metricsFile;
+    }
+    
+    /**
+     * It selects the format of the result files (csv by default)
+     * @param outputFormat
+     */
+    public void setOutputFormat(OutputFormat outputFormat){
+    	this.outputFormat = outputFormat;
+    }
+    
+    /**
+     * It sets how often the measures are also written while mineData runs
+     * @param seconds 0 (default) to write them only at the end
+     */
+    public void setMetricsInterval(long seconds){
+    	this.metricsInterval = Math.max(0, seconds);
+    }
+    
+    /**
+     * @return the duration in milliseconds of each stage measured, in order.
+     *         The stages of mineData overlap, so their durations add up to
+     *         more than the run.
+     */
+    public Map<String, Long> getStageMillis(){
+    	return this.metrics.getStages();
+    }
+    
+    /**
+     * @return the number of commits read by the last mineData
+     */
+    public int getCommitCount(){
+    	return this.commitCount;
+    }
+    
+    /**
+     * @return the number of links kept by the last mineData
+     */
+    public int getLinkCount(){
+    	return this.linkCount;
+    }
+		
+	
+	/**
+	 * It finds the bug fixing and bug inducing commits of a project. The
+	 * stages run at the same time, connected by bounded queues: the log is
+	 * read on one thread, commits are linked to their issues on another,
+	 * while the suspects of the first links are calculated and saved on the
+	 * calling thread (or by the workers).
+	 * @param git url of the repository
+	 * @param jira url of the issue tracker
+	 * @param projectName Jira key of the project
+	 * @param token prefix of the bug inducing commits file
+	 * @return false if the analysis failed
+	 * @throws MalformedURLException
+	 */
 	public boolean mineData(String git, String jira, String projectName, String token) throws MalformedURLException {
 		this.sourceCodeRepository = new URL(git);
 		this.bugTracker = new URL(jira);
 		this.projectName = projectName;
+		File metricsFile = this.metricsFile != null ? this.metricsFile : new File(directory, projectName + "_metrics.json");
+		if (metricsInterval > 0)
+			metrics.startReporting(metricsFile, metricsInterval);
+		transactionManager.setMetrics(metrics);
+		ExecutorService stages = Executors.newFixedThreadPool(2);
+		ExecutorService pool = null;
 		
 		try {
 		
-		System.out.println("Downloading Git logs for project " + projectName);
-		List<Transaction> transactions = transactionManager.getBugFixingCommits(sourceCodeRepository,projectName);
-		System.out.println("Git logs downloaded for project " + projectName);
-		try {
-			Thread.sleep(2000);
-		} catch (InterruptedException e) {
-			// TODO Auto-generated catch block
+		MiningState state = new MiningState(directory, projectName);
+		final String since = incremental ? state.getLastHead() : null;
+		final IssueStore issues = this.issues != null ? this.issues : IssueStore.load(directory, projectName);
+		final StageQueue<Transaction> commits = new StageQueue<Transaction>(COMMIT_QUEUE_SIZE);
+		final StageQueue<FutureTask<Link>> links = new StageQueue<FutureTask<Link>>(LINK_QUEUE_SIZE);
+		if (sharedPool == null && workers > 1) {
+			System.out.println("Using " + workers + " workers");
+			pool = Executors.newWorkStealingPool(workers);
+		}
+		final ExecutorService suspectPool = sharedPool != null ? sharedPool : pool;
+		results = null;
+		Future<?> log = stages.submit(() -> readLog(since, commits));
+		Future<?> linking = stages.submit(() -> linkCommits(commits, issues, links, suspectPool, token));
+		calculateBugInducingCommits(links, suspectPool);
+		log.get();
+		linking.get();
+		results.close();
+		commitCount = transactionManager.getCommitCount();
+		System.out.println("Bug inducing commits for project calculated");
+		state.setLastHead(transactionManager.getHead());
+		state.save();
+		}
+		catch(Exception e){
 			e.printStackTrace();
 			return  false;
 		}
+		finally {
+			stages.shutdownNow();
+			if (pool != null)
+				pool.shutdownNow();
+			releaseThread();
+			closeResults();
+			metrics.stopReporting();
+			writeMetrics(metricsFile);
+			transactionManager.close();
+		}
+
+		return  true;
+	}
+	
+	/*
+	 * First stage: it reads the log and queues the commits with a bug id
+	 */
+	private Void readLog(String since, StageQueue<Transaction> commits) throws Exception {
+		System.out.println("Downloading Git logs for project " + projectName);
+		try {
+			transactionManager.streamBugFixingCommits(sourceCodeRepository, projectName, since, commits::put);
+			commits.close();
+		} catch (Exception e) {
+			commits.fail(e);
+			throw e;
+		} finally {
+			releaseThread();
+		}
+		System.out.println("Git logs downloaded for project " + projectName);
+		return null;
+	}
+
+	/*
+	 * It releases the repository reader of a stage thread once the stage is
+	 * done, since the Git may be kept open between analyses
+	 */
+	private void releaseThread() {
+		Git git = transactionManager.getGit();
+		if (git != null)
+			git.releaseThread();
+	}
+	
+	/*
+	 * Second stage: it builds the links of the commits, saves those passing
+	 * the discard rules and queues the calculation of their suspects, run by
+	 * the pool if any, otherwise by the last stage
+	 */
+	private Void linkCommits(StageQueue<Transaction> commits, IssueStore issues, StageQueue<FutureTask<Link>> links,
+			ExecutorService pool, String token) throws Exception {
 		System.out.println("Calculating bug fixing commits for project " + projectName);
-		List<Link> links = linkManager.getLinks(transactions, projectName, null);
-		printData(links);
-		discartLinks(links);
-		saveBugFixingCommits(links,projectName);
+		long start = System.currentTimeMillis();
+		int[][] table = new int[4][7];
+		table[1][0] = 1;
+		table[2][0] = 2;
+		int fixing = 0;
+		int found = 0;
+		int removed = 0;
+		try {
+			Transaction t = commits.take();
+			// the log tells whether the run is incremental once its first commit or its end is queued
+			boolean append = transactionManager.isIncremental();
+			results = new AsyncResultSink(outputFormat.open(directory, projectName, token, append));
+			final Git git = transactionManager.getGit();
+			if (git != null) {
+				git.setDiffAlgorithm(diffAlgorithm);
+				if (blameCacheBudget > 0)
+					git.setBlameCacheBudget(blameCacheBudget);
+			}
+			for (; t != null; t = commits.take()) {
+				fixing++;
+				if (fixing % 100 == 0)
+					System.out.println(fixing + " commits linked");
+				for (long bugId : t.getBugIds()) {
+					final Link l = new Link(t, bugId, issues);
+					count(table, l);
+					found++;
+					if (isDiscarded(l)) {
+						removed++;
+						continue;
+					}
+					results.bugFixingCommit(l);
+					FutureTask<Link> task = new FutureTask<Link>(() -> {
+						l.calculateSuspects(git, null);
+						return l;
+					});
+					if (pool != null)
+						pool.execute(task);
+					links.put(task);
+				}
+			}
+			links.close();
+			if (append)
+				System.out.println(fixing + " new presumed bug fixing commits since " + transactionManager.getHead());
+		} catch (Exception e) {
+			links.fail(e);
+			throw e;
+		} finally {
+			releaseThread();
+		}
+		printData(table);
+		String print = "\n";
+		print += "\n";
+		print += String.format("%s", "--------------------------------------------------------------------------------------------------------------");
+		print += "\n";
+		print+=("Links removed too low score (sem > 1 v (sem = 1 and syn > 0)): "+ removed +" ("+ ((double)removed/(double)found)*100 + "%)");
+		System.out.println(print);
+		linkCount = found - removed;
+		metrics.increment("links", linkCount);
+		metrics.increment("links.discarded", removed);
+		metrics.stage("links", System.currentTimeMillis() - start);
 		System.out.println("Bug fixing commits for project " + projectName + "calculated");
-		System.out.println(links.size()+" bug fixing commits for project " + projectName + "found");
+		System.out.println(linkCount+" bug fixing commits for project " + projectName + "found");
+		return null;
+	}
+		/*
+	 * It closes the results if still open after a failure, keeping what was written
+	 */
+	private void closeResults(){
+		if (results == null)
+			return;
 		try {
-			Thread.sleep(2000);
-		} catch (InterruptedException e) {
+			results.close();
+		} catch (IOException e) {
 			e.printStackTrace();
-			return  false;
 		}
-		System.out.println("Calculating Bug inducing commits for project " + projectName);
-		calculateBugInducingCommits(links,projectName,token);
-		System.out.println("Bug inducing commits for project calculated");
-		}
-		catch(Exception e){
-			return  false;
+	}
+	
+	/**
+	 * It writes the measures of the run, with the counts of the blame cache
+	 * @param file
+	 */
+	private void writeMetrics(File file){
+		try {
+			Git git = transactionManager.getGit();
+			if (git != null)
+				metrics.cache("blame", git.getBlameCache().getHits(), git.getBlameCache().getMisses());
+			metrics.write(file);
+			System.out.println("Metrics saved in " + file);
+		} catch (Exception e) {
+			e.printStackTrace();
 		}
+	}
 
-		return  true;
+	
+	/*
+	 * It adds a link to the table of printData
+	 */
+	private void count(int[][] multi, Link l){
+		int row = l.getSyntacticConfidence();
+		int column = l.getSemanticConfidence();
+		column++;
+		multi[row][column]++;	
+		multi[row][6]++;
+		multi[3][column]++;
+		multi[3][6]++;
 	}
 	
 	/**
 	 * It prints a table summarizing the results of the analysis
-	 * @param links
+	 * @param multi links by syntactic and semantic confidence, filled by count()
 	 */
-	private void printData(List<Link> links){
-		int[][] multi = new int[4][7];	
-		for (int row = 0; row < 4; row ++)
-		    for (int col = 0; col < 7; col++)
-		    	multi[row][col] = 0;
-		multi[0][0]  = 0;	
-		multi[1][0]  = 1;	
-		multi[2][0]  = 2;
-		
-		for (Link l : links){
-			int row = l.getSyntacticConfidence();
-			int column = l.getSemanticConfidence();
-			column++;
-			multi[row][column]++;	
-			multi[row][6]++;
-			multi[3][column]++;
-			multi[3][6]++;
-		}
-		
+	private void printData(int[][] multi){
 		String print = "\n";
 		print += String.format("%-16s%-16s%-16s%-16s%-16s%-16s%-16s","syn / sem", "0", "1", "2", "3", "4","total");
 		print += "\n";
@@ -116,88 +446,39 @@ public class Application {
 	/*
 	 * Only Links with sem > 1 OR ( sem = 1 AND syn > 0) must be considered
 	 */
-	private void discartLinks(List<Link> links){
-		List<Link> linksToDelete = new LinkedList<Link>();
-		for (Link l : links){
-			if (l.getSemanticConfidence() < 1 && (l.getSemanticConfidence() != 1 ||  l.getSyntacticConfidence() < 0)) {
-				linksToDelete.add(l);
-				}
-			else
-				if (l.transaction.getTimeStamp().getTime() > l.issue.getClose()){
-					linksToDelete.add(l);
-				}
-		}
-		String print = "\n";
-		print += "\n";
-		print += String.format("%s", "--------------------------------------------------------------------------------------------------------------");
-		print += "\n";
-		print+=("Links removed too low score (sem > 1 v (sem = 1 and syn > 0)): "+ linksToDelete.size() +" ("+ ((double)linksToDelete.size()/(double)links.size())*100 + "%)");
-		System.out.println(print);
-		links.removeAll(linksToDelete);
+	private boolean isDiscarded(Link l){
+		if (l.getSemanticConfidence() < 1 && (l.getSemanticConfidence() != 1 ||  l.getSyntacticConfidence() < 0))
+			return true;
+		return l.transaction.getTimeStamp().getTime() > l.issue.getClose();
 	}
-	
-	/**
-	 * It saves all bug fixing commits found on a file
-	 * @param links
-	 * @param projectName
-	 */
-	private void saveBugFixingCommits(List<Link> links,String projectName){
-		try {
-			PrintWriter printWriter = new PrintWriter(new File( projectName+"_BugFixingCommit.csv"));
-			printWriter.println("commitsSha;commitTs;commitComment;issueKey;issueOpen;issueClose;issueTitle");
-			String pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
-		    SimpleDateFormat format = new SimpleDateFormat(pattern);
-			for (Link l : links){
-				String row = l.transaction.getId() + ";"
-						+    format.format(l.transaction.getTimeStamp()) + ";"
-						+    l.transaction.getComment() + ";"
-						+    projectName+"-"+l.issue.getId()	+";"
-						+    format.format(new Date(l.issue.getOpen())) + ";"
-					    +    format.format(new Date(l.issue.getClose())) + ";"
-					    +    l.issue.getTitle()
-						;
-				printWriter.println(row);				
-			}
-			printWriter.close();
-			
-		} catch (FileNotFoundException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}}
-		
-		private void calculateBugInducingCommits(List<Link> links,String projectName, String token){
+		/**
+		 * Last stage: it saves the suspects of the queued links, in the order
+		 * of the links whatever the number of workers, so the file is the
+		 * same as with a sequential run
+		 * @param links
+		 * @param pool running the calculations, null to run them here
+		 * @throws Exception if the calculation failed
+		 */
+		private void calculateBugInducingCommits(StageQueue<FutureTask<Link>> links, ExecutorService pool)
+				throws Exception {
 			System.out.println("Calculating Bug Inducing Commits");
-			int count = links.size();
-			PrintWriter printWriter;
-			try {
-				printWriter = new PrintWriter(token+"_BugInducingCommits.csv");
-				printWriter.println("bugFixingId;bugFixingTs;bugFixingfileChanged;bugInducingId;bugInducingTs;issueType");
-				for (Link l : links){
-					if (count % 100 == 0)
-						System.out.println(count + " Commits left");
-					l.calculateSuspects(transactionManager.getGit(),null);
-					String pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
-			        SimpleDateFormat format1 = new SimpleDateFormat(pattern);
-			        for (Suspect s : l.getSuspects()){
-			        	printWriter.println();
-			        	printWriter.println(
-			        			l.transaction.getId() + ";" + 
-			        			format1.format(l.transaction.getTimeStamp()) +";" +
-			        			s.getFileName()		+ ";" +
-			        			s.getCommitId()     + ";" +
-			        			format1.format(s.getTs()) +";"+
-			        			l.issue.getType()
-			        			);
-			        }
-			        count--;
+			long start = System.currentTimeMillis();
+			int count = 0;
+			// the results are opened by the previous stage before it queues its first link or its end
+			for (FutureTask<Link> task = links.take(); task != null; task = links.take()){
+				if (pool == null)
+					task.run();
+				Link l = task.get();
+		        metrics.increment("suspects", l.getSuspects().size());
+		        for (Suspect s : l.getSuspects())
+		        	results.bugInducingCommit(l, s);
+		        count++;
+				if (count % 100 == 0)
+					System.out.println(count + " bug fixing commits done");
 			}
-				printWriter.close();
-			} catch (Exception e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-				System.out.println((e.getStackTrace()));
-			}	
-
-		
+			Git git = transactionManager.getGit();
+			if (git != null)
+				System.out.println(git.getBlameCache());
+			metrics.stage("suspects", System.currentTimeMillis() - start);
 	}
 }
@@ -0,0 +1,64 @@
+package com.SZZ.jiraAnalyser;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Bounded queue between two stages of the mining pipeline.
+ *
+ * The producing stage blocks when the queue is full, so a slow stage holds
+ * back the ones before it instead of letting results pile up in memory. The
+ * producer ends the stream with close(), or with fail() so that the consumer
+ * gets the failure instead of waiting forever.
+ */
+class StageQueue<T> {
+
+	private static final Object END = new Object();
+
+	private final BlockingQueue<Object> queue;
+	private volatile Throwable failure;
+
+	StageQueue(int capacity) {
+		this.queue = new ArrayBlockingQueue<Object>(capacity);
+	}
+
+	void put(T item) throws InterruptedException {
+		queue.put(item);
+	}
+
+	/**
+	 * It ends the stream after the items already queued
+	 * @throws InterruptedException
+	 */
+	void close() throws InterruptedException {
+		queue.put(END);
+	}
+
+	/**
+	 * It ends the stream with a failure, dropping the items not yet taken
+	 * @param cause
+	 */
+	void fail(Throwable cause) {
+		failure = cause;
+		queue.clear();
+		queue.offer(END);
+	}
+
+	/**
+	 * It waits for the next item
+	 * @return the item, null at the end of the stream
+	 * @throws InterruptedException
+	 * @throws ExecutionException if the producer failed
+	 */
+	@SuppressWarnings("unchecked")
+	T take() throws InterruptedException, ExecutionException {
+		Object item = queue.take();
+		if (item != END)
+			return (T) item;
+		queue.offer(END);
+		if (failure != null)
+			throw new ExecutionException(failure);
+		return null;
+	}
+}
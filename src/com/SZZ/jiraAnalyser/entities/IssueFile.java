@@ -0,0 +1,197 @@
+package com.SZZ.jiraAnalyser.entities;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact binary file of Jira issues, memory-mapped and queried by issue
+ * number without parsing the whole file.
+ *
+ * Layout (big endian):
+ * header:  magic "SZZI", version, record count, heap offset
+ * records: one fixed-width record per issue sorted by number
+ *          number, open, close, status, resolution and the offset/length
+ *          of title, assignee, type, attachments and comments in the heap
+ * heap:    UTF-8 strings; attachments and comments are joined by '\n'
+ *
+ * Lookups binary search the records and only decode the strings of the
+ * issue found. The file is read only and can be shared by several threads.
+ */
+public class IssueFile {
+
+	private static final int MAGIC = 0x535a5a49;
+	private static final int VERSION = 1;
+	private static final int HEADER = 4 + 4 + 4 + 8;
+	private static final int STRINGS = 5;
+	private static final int RECORD = 8 + 8 + 8 + 1 + 1 + STRINGS * 8;
+	private static final char SEPARATOR = '\n';
+
+	private final File file;
+	private final MappedByteBuffer records;
+	private final MappedByteBuffer heap;
+	private final int count;
+
+	private IssueFile(File file, MappedByteBuffer records, MappedByteBuffer heap, int count) {
+		this.file = file;
+		this.records = records;
+		this.heap = heap;
+		this.count = count;
+	}
+
+	/**
+	 * It maps an issue file written by write()
+	 * @param file
+	 * @return
+	 * @throws IOException if the file is not an issue file
+	 */
+	public static IssueFile open(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+				FileChannel channel = raf.getChannel()) {
+			if (channel.size() < HEADER)
+				throw new IOException("Not an issue file: " + file);
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+				throw new IOException("Not an issue file: " + file);
+			int count = header.getInt(8);
+			long heapOffset = header.getLong(12);
+			MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, HEADER, (long) count * RECORD);
+			MappedByteBuffer heap = channel.map(FileChannel.MapMode.READ_ONLY, heapOffset,
+					channel.size() - heapOffset);
+			return new IssueFile(file, records, heap, count);
+		}
+	}
+
+	/**
+	 * It writes the issues, given in ascending number order
+	 * @param file
+	 * @param numbers
+	 * @param issues
+	 * @throws IOException
+	 */
+	public static void write(File file, long[] numbers, LongMap<Issue> issues) throws IOException {
+		ByteArrayOutputStream heap = new ByteArrayOutputStream();
+		File temp = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(numbers.length);
+			out.writeLong(HEADER + (long) numbers.length * RECORD);
+			for (long number : numbers) {
+				Issue issue = issues.get(number);
+				out.writeLong(issue.getId());
+				out.writeLong(issue.getOpen());
+				out.writeLong(issue.getClose());
+				out.writeByte(issue.getStatus().ordinal());
+				out.writeByte(issue.getResolution().ordinal());
+				writeString(out, heap, issue.getTitle());
+				writeString(out, heap, issue.getAssigned());
+				writeString(out, heap, issue.getType());
+				writeString(out, heap, join(issue.getAttachments()));
+				writeString(out, heap, join(issue.getComments()));
+			}
+			heap.writeTo(out);
+		}
+		if (file.exists())
+			file.delete();
+		if (!temp.renameTo(file))
+			throw new IOException("Cannot write " + file);
+	}
+
+	private static void writeString(DataOutputStream out, ByteArrayOutputStream heap, String value) throws IOException {
+		byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+		out.writeInt(heap.size());
+		out.writeInt(bytes.length);
+		heap.write(bytes);
+	}
+
+	private static String join(List<String> values) {
+		StringBuilder sb = new StringBuilder();
+		for (String value : values) {
+			if (sb.length() > 0)
+				sb.append(SEPARATOR);
+			sb.append(value);
+		}
+		return sb.toString();
+	}
+
+	private static List<String> split(String value) {
+		if (value.isEmpty())
+			return new ArrayList<String>();
+		return new ArrayList<String>(Arrays.asList(value.split(SEPARATOR + "", -1)));
+	}
+
+	/**
+	 * @param number
+	 * @return the issue with that number, or null
+	 */
+	public Issue get(long number) {
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			long value = records.getLong(mid * RECORD);
+			if (value < number)
+				low = mid + 1;
+			else if (value > number)
+				high = mid - 1;
+			else
+				return read(mid * RECORD);
+		}
+		return null;
+	}
+
+	private Issue read(int base) {
+		long number = records.getLong(base);
+		long open = records.getLong(base + 8);
+		long close = records.getLong(base + 16);
+		Issue.Status status = Issue.Status.values()[records.get(base + 24)];
+		Issue.Resolution resolution = Issue.Resolution.values()[records.get(base + 25)];
+		int strings = base + 26;
+		String title = string(strings);
+		String assignee = string(strings + 8);
+		String type = string(strings + 16);
+		List<String> attachments = split(string(strings + 24));
+		if (attachments.isEmpty())
+			attachments.add("");
+		List<String> comments = split(string(strings + 32));
+		return new Issue(number, title, status, resolution, assignee, open, close, attachments, comments, type);
+	}
+
+	private String string(int position) {
+		int offset = records.getInt(position);
+		int length = records.getInt(position + 4);
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++)
+			bytes[i] = heap.get(offset + i);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return the issue numbers in ascending order
+	 */
+	public long[] numbers() {
+		long[] numbers = new long[count];
+		for (int i = 0; i < count; i++)
+			numbers[i] = records.getLong(i * RECORD);
+		return numbers;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	public File getFile() {
+		return file;
+	}
+}
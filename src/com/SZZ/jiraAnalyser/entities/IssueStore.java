@@ -0,0 +1,211 @@
+package com.SZZ.jiraAnalyser.entities;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import com.SZZ.jiraAnalyser.entities.Issue.Resolution;
+
+/**
+ * In-memory index of the Jira issues of a project.
+ *
+ * Every projectName_page.csv file written by JiraRetriever is read once and
+ * the issues are indexed by number, so that links can look up their bug
+ * without scanning the files again. The index is read only once loaded and
+ * can be shared by several threads.
+ *
+ * When a projectName_issues.bin file (see IssueFile) newer than the pages
+ * exists, it is memory-mapped instead and issues are decoded on lookup.
+ */
+public class IssueStore {
+
+	private final String projectName;
+	private final LongMap<Issue> issues;
+	private final IssueFile issueFile;
+
+	private IssueStore(String projectName, LongMap<Issue> issues, IssueFile issueFile) {
+		this.projectName = projectName;
+		this.issues = issues;
+		this.issueFile = issueFile;
+	}
+
+	/**
+	 * It loads all issues of a project found in the working directory, from
+	 * the binary file when it is up to date, otherwise from the csv pages
+	 * @param projectName
+	 * @return
+	 */
+	public static IssueStore load(String projectName) {
+		return load(null, projectName);
+	}
+
+	/**
+	 * It loads all issues of a project found in a directory, from the binary
+	 * file when it is up to date, otherwise from the csv pages
+	 * @param directory null for the working directory
+	 * @param projectName
+	 * @return
+	 */
+	public static IssueStore load(File directory, String projectName) {
+		File binary = binaryFile(directory, projectName);
+		if (binary.exists() && binary.lastModified() >= lastPageModified(directory, projectName)) {
+			try {
+				IssueFile issueFile = IssueFile.open(binary);
+				System.out.println(issueFile.size() + " Jira issues mapped from " + binary);
+				return new IssueStore(projectName, null, issueFile);
+			} catch (IOException e) {
+				System.out.println("Cannot map " + binary + ", reading csv pages: " + e.getMessage());
+			}
+		}
+		return loadPages(directory, projectName);
+	}
+
+	/**
+	 * It loads all issue pages of a project found in the working directory
+	 * @param projectName
+	 * @return
+	 */
+	public static IssueStore loadPages(String projectName) {
+		return loadPages(null, projectName);
+	}
+
+	/**
+	 * It loads all issue pages of a project found in a directory
+	 * @param directory null for the working directory
+	 * @param projectName
+	 * @return
+	 */
+	public static IssueStore loadPages(File directory, String projectName) {
+		LongMap<Issue> issues = new LongMap<Issue>(1024);
+		int page = 0;
+		File file = new File(directory, projectName + "_" + page + ".csv");
+		while (file.exists()) {
+			loadPage(file, projectName, issues);
+			page++;
+			file = new File(directory, projectName + "_" + page + ".csv");
+		}
+		System.out.println(issues.size() + " Jira issues loaded for project " + projectName);
+		return new IssueStore(projectName, issues, null);
+	}
+
+	/**
+	 * It converts the csv pages of a project to its binary issue file
+	 * @param projectName
+	 * @throws IOException
+	 */
+	public static void writeBinary(String projectName) throws IOException {
+		writeBinary(null, projectName);
+	}
+
+	/**
+	 * It converts the csv pages of a project kept in a directory to its
+	 * binary issue file
+	 * @param directory null for the working directory
+	 * @param projectName
+	 * @throws IOException
+	 */
+	public static void writeBinary(File directory, String projectName) throws IOException {
+		IssueStore store = loadPages(directory, projectName);
+		File binary = binaryFile(directory, projectName);
+		IssueFile.write(binary, store.issues.keys(), store.issues);
+		System.out.println("Jira issues saved in " + binary);
+	}
+
+	public static File binaryFile(String projectName) {
+		return binaryFile(null, projectName);
+	}
+
+	public static File binaryFile(File directory, String projectName) {
+		return new File(directory, projectName + "_issues.bin");
+	}
+
+	/**
+	 * @param directory null for the working directory
+	 * @param projectName
+	 * @return when the issue files of a project were last modified, 0 if
+	 *         there are none, so that issues kept in memory can be reloaded
+	 *         when they change
+	 */
+	public static long lastModified(File directory, String projectName) {
+		return Math.max(lastPageModified(directory, projectName), binaryFile(directory, projectName).lastModified());
+	}
+
+	private static long lastPageModified(File directory, String projectName) {
+		long last = 0;
+		int page = 0;
+		File file = new File(directory, projectName + "_" + page + ".csv");
+		while (file.exists()) {
+			last = Math.max(last, file.lastModified());
+			page++;
+			file = new File(directory, projectName + "_" + page + ".csv");
+		}
+		return last;
+	}
+
+	private static void loadPage(File file, String projectName, LongMap<Issue> issues) {
+		String prefix = projectName + "-";
+		try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+			String sCurrentLine;
+			while ((sCurrentLine = br.readLine()) != null) {
+				sCurrentLine = sCurrentLine.replace("\"", "");
+				if (!sCurrentLine.startsWith(prefix))
+					continue;
+				try {
+					Issue issue = parseIssue(sCurrentLine, prefix);
+					if (!issues.containsKey(issue.getId()))
+						issues.put(issue.getId(), issue);
+				} catch (Exception e) {
+					System.out.println("Skipping malformed issue row in " + file + ": " + e);
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * It parses a row of a page, fields as read by the former Link.setBug()
+	 * @param row
+	 * @param prefix
+	 * @return
+	 */
+	static Issue parseIssue(String row, String prefix) {
+		String[] s = row.split(";");
+		long number = Long.parseLong(s[0].substring(prefix.length()));
+		List<String> comments = new LinkedList<String>();
+		List<String> attachments = Arrays.asList(s[7].replace("[", "").replace("]", ""));
+		int i = 8;
+		while (i < s.length) {
+			comments.add(s[i]);
+			i++;
+		}
+		Issue.Status status = Issue.Status.UNCONFIRMED;
+		Resolution resolution = Resolution.NONE;
+		return new Issue(number, s[1], status, resolution, s[4],
+				Long.parseLong(s[5]), Long.parseLong(s[6]), attachments, comments, s[7]);
+	}
+
+	/**
+	 * @param number
+	 * @return the issue projectName-number, or null if it is not known
+	 */
+	public Issue get(long number) {
+		if (issueFile != null)
+			return issueFile.get(number);
+		return issues.get(number);
+	}
+
+	public String getProjectName() {
+		return projectName;
+	}
+
+	public int size() {
+		if (issueFile != null)
+			return issueFile.size();
+		return issues.size();
+	}
+}
@@ -1,20 +1,14 @@
 package  com.SZZ.jiraAnalyser.entities;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-import org.eclipse.jgit.revwalk.RevCommit;
 
  import  com.SZZ.jiraAnalyser.entities.*;
 import com.SZZ.jiraAnalyser.entities.Issue.Resolution;
@@ -43,14 +37,14 @@ public class Link {
 	 * with the bug
 	 * 
 	 * @param t
-	 * @param b
 	 * @param number
+	 * @param issues
 	 */
-	public Link(Transaction t, long number, String projectName) {
+	public Link(Transaction t, long number, IssueStore issues) {
 		this.transaction = t;
 		this.number = number;
-		this.projectName = projectName;
-		this.setBug();
+		this.projectName = issues.getProjectName();
+		this.setBug(issues);
 		this.setSyntacticConfidence();
 		this.setSemanticConfidence();
 	}
@@ -88,36 +82,89 @@ public class Link {
 				this.semanticConfidence++;
 			// The short description of the bug report b is contained in the log
 			// message of the transaction t
-			String e = longestCommonSubstrings(transaction.getComment().toLowerCase(), issue.getTitle().toLowerCase());
-			if (e.length() > 20)
+			if (longestCommonSubstringsLongerThan(transaction.getComment().toLowerCase(), issue.getTitle().toLowerCase(), 20))
 				this.semanticConfidence++;
 		}
 	}
 
+	/**
+	 * It returns the longest common substrings of s and t, formatted as a set.
+	 * Only two rows of the table are kept.
+	 */
 	public static String longestCommonSubstrings(String s, String t) {
-		int[][] table = new int[s.length()][t.length()];
+		int[] previous = new int[t.length()];
+		int[] row = new int[t.length()];
 		int longest = 0;
 		Set<String> result = new HashSet<>();
 
 		for (int i = 0; i < s.length(); i++) {
 			for (int j = 0; j < t.length(); j++) {
 				if (s.charAt(i) != t.charAt(j)) {
+					row[j] = 0;
 					continue;
 				}
 
-				table[i][j] = (i == 0 || j == 0) ? 1 : 1 + table[i - 1][j - 1];
-				if (table[i][j] > longest) {
-					longest = table[i][j];
+				row[j] = (i == 0 || j == 0) ? 1 : 1 + previous[j - 1];
+				if (row[j] > longest) {
+					longest = row[j];
 					result.clear();
 				}
-				if (table[i][j] == longest) {
+				if (row[j] == longest) {
 					result.add(s.substring(i - longest + 1, i + 1));
 				}
 			}
+			int[] swap = previous;
+			previous = row;
+			row = swap;
 		}
 		return result.toString();
 	}
 
+	/**
+	 * It checks whether longestCommonSubstrings(s, t) is longer than length,
+	 * using memory linear in the shorter string. The k distinct substrings of
+	 * length L are formatted in k * (L + 2) characters, so the check returns
+	 * as soon as a common substring of length - 1 characters is found, and
+	 * otherwise only counts the longest substrings needed to go over length.
+	 * @param s
+	 * @param t
+	 * @param length
+	 * @return
+	 */
+	public static boolean longestCommonSubstringsLongerThan(String s, String t, int length) {
+		if (s.length() < t.length()) {
+			String swap = s;
+			s = t;
+			t = swap;
+		}
+		int[] previous = new int[t.length()];
+		int[] row = new int[t.length()];
+		int longest = 0;
+		Set<String> result = new HashSet<>();
+
+		for (int i = 0; i < s.length(); i++) {
+			for (int j = 0; j < t.length(); j++) {
+				if (s.charAt(i) != t.charAt(j)) {
+					row[j] = 0;
+					continue;
+				}
+				row[j] = (i == 0 || j == 0) ? 1 : 1 + previous[j - 1];
+				if (row[j] > longest) {
+					longest = row[j];
+					if (longest + 2 > length)
+						return true;
+					result.clear();
+				}
+				if (row[j] == longest && result.size() * (longest + 2) <= length)
+					result.add(s.substring(i - longest + 1, i + 1));
+			}
+			int[] swap = previous;
+			previous = row;
+			row = swap;
+		}
+		return longest == 0 ? 2 > length : result.size() * (longest + 2) > length;
+	}
+
 	/**
 	 * It checks whether one or more of the files affected by the transaction t
 	 * have been attached to the bug b
@@ -173,67 +220,17 @@ public class Link {
 	}
 
 	/**
-	 * It gets from Jira Log File
+	 * It gets the bug from the issues of the project
 	 * 
-	 * @return true false
+	 * @param issues
 	 */
-	private void setBug() {
-		int page = (int)Math.floor(number / 1000);
-		while(!new File(projectName+"_"+page+".csv").exists()){
-			page--;
-		}
-		try (BufferedReader br = new BufferedReader(new FileReader((projectName+"_"+page+".csv")))) {
-			String sCurrentLine;
-			while ((sCurrentLine = br.readLine()) != null) {
-				sCurrentLine = sCurrentLine.replaceAll("\"", "");
-				if (sCurrentLine.startsWith(projectName + "-" + number)) {
-					String[] s = sCurrentLine.split(";");
-					List<String> comments = new LinkedList<String>();
-					List<String> attachments = Arrays.asList(s[7].replace("[", "").replace("]", ""));
-					int i = 8;
-					while (i < s.length) {
-						comments.add(s[i]);
-						i++;
-					}
-					Issue.Status status = Issue.Status.UNCONFIRMED;
-					Resolution resolution = Resolution.NONE;
-					
-					try{
-						Issue.Status.valueOf(s[3].toUpperCase());
-					}
-					catch(Exception e){
-						status = Issue.Status.UNCONFIRMED;
-					}
-					
-					try{
-						Resolution.valueOf(s[2].toUpperCase().replace(" ", "").replace("'", ""));
-					}
-					catch(Exception e){
-						 resolution = Resolution.NONE;
-					}
-					
-					issue = new Issue(number, s[1], status,resolution, s[4],
-							Long.parseLong(s[5]), Long.parseLong(s[6]),attachments, comments,s[7]);
-					break;
-				}
-			}
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+	private void setBug(IssueStore issues) {
+		issue = issues.get(number);
 	}
 
 	private boolean containsKeywords() {
-		String comment = transaction.getComment().toLowerCase();
-		Pattern patter1 = Pattern.compile("fix(e[ds])?|bugs?|defects?|patch", Pattern.CASE_INSENSITIVE);
-		Pattern patter2 = Pattern.compile("^[0-9]*$", Pattern.CASE_INSENSITIVE);
-		Matcher p1 = patter1.matcher(comment.toLowerCase());
-		Matcher p2 = patter2.matcher(comment);
-		boolean b1 = p1.find();
-		boolean b2 = p2.find();
-		if (b1 || b2)
-			return true;
-		else
-			return false;
+		MessageMatcher.Result match = transaction.getMatch();
+		return match.hasKeyword() || match.isNumeric();
 	}
 
 	public int getSyntacticConfidence() {
@@ -250,15 +247,19 @@ public class Link {
 	 * @param git
 	 */
 	public void calculateSuspects(Git git, PrintWriter l) {
+		List<String> javaFiles = new ArrayList<String>();
+		for (FileInfo fi : transaction.getFiles())
+			if (fi.filename.endsWith(".java"))
+				javaFiles.add(fi.filename);
+		if (javaFiles.isEmpty())
+			return;
+		CommitDiff diff = git.getCommitDiff(transaction.getId(), javaFiles, l);
+		if (diff == null)
+			return;
 		for (FileInfo fi : transaction.getFiles()) {
 			if (fi.filename.endsWith(".java")) {
-					String diff = git.getDiff(transaction.getId(), fi.filename, l);
-					if (diff == null)
-						break;
-					List<Integer> linesMinus = git.getLinesMinus(diff);
-					if (linesMinus == null)
-						return;
-					if (linesMinus.size() == 0)
+					int[] linesMinus = diff.getDeletedLines(fi.filename);
+					if (linesMinus.length == 0)
 						return;
 					String previousCommit = git.getPreviousCommit(transaction.getId(), fi.filename,l);
 					if (previousCommit != null) {
@@ -276,22 +277,28 @@ public class Link {
 	 * @param previous
 	 * @param git
 	 * @param fileName
-	 * @param linesMinus
+	 * @param linesMinus removed line ranges, see Git.getDeletedLines
 	 * @return
 	 */
-	private Suspect getSuspect(String previous, Git git, String fileName, List<Integer> linesMinus, PrintWriter l) {
-    	RevCommit closestCommit = null; 
+	private Suspect getSuspect(String previous, Git git, String fileName, int[] linesMinus, PrintWriter l) {
+    	String closestCommit = null; 
+    	long closestTime = 0;
     	long tempDifference = Long.MAX_VALUE; 
-    	for (int i : linesMinus){ 
+    	String[] blame = git.getBlame(previous, fileName, linesMinus);
+    	if (blame == null)
+    		return null;
+    	for (String sha : blame){ 
     		try{ 
-    			String sha = git.getBlameAt(previous,fileName,i);
     			if (sha == null)
     				break;
-    			RevCommit commit = git.getCommit(sha,l); 
-    			long difference =(issue.getOpen()/1000) - (commit.getCommitTime()); 
+    			long commitTime = git.getCommitTime(sha,l); 
+    			if (commitTime < 0)
+    				continue;
+    			long difference =(issue.getOpen()/1000) - commitTime; 
     			if (difference > 0){ 
     				if (difference < tempDifference ){
-    					closestCommit = commit; 
+    					closestCommit = sha; 
+    					closestTime = commitTime;
     					tempDifference = difference; } 
     				}
     			} catch (Exception e){ 
@@ -300,8 +307,7 @@ public class Link {
     			}
     	} 
     	if (closestCommit != null){ 
-    		Long temp = Long.parseLong(closestCommit.getCommitTime()+"") * 1000; 
-    		Suspect s = new Suspect(closestCommit.getName(), new Date(temp), fileName);
+    		Suspect s = new Suspect(closestCommit, new Date(closestTime * 1000), fileName);
     	return s; 
     	}
   
@@ -18,6 +18,16 @@ public class LinkManager {
 	 * @return
 	 */
 	public List<Link> getLinks(List<Transaction> ts, String projectName, PrintWriter writer) {
+		return getLinks(ts, IssueStore.load(projectName), writer);
+	}
+
+	/**
+	 * It return a list of Links, looking bugs up in an already loaded issue store
+	 * @param ts
+	 * @param issues
+	 * @return
+	 */
+	public List<Link> getLinks(List<Transaction> ts, IssueStore issues, PrintWriter writer) {
 		int counter=ts.size();
 		System.out.println("Missing "+counter +" commits");
 		List<Link> links = new ArrayList<Link>(); 
@@ -25,7 +35,7 @@ public class LinkManager {
 			if (counter%100==0)
 				System.out.println("Missing "+counter +" commits");
 			for (long bugId : t.getBugIds()){
-				Link l = new Link(t, bugId, projectName);
+				Link l = new Link(t, bugId, issues);
 				links.add(l);
 			}
 			counter--;
@@ -0,0 +1,135 @@
+package com.SZZ.jiraAnalyser.entities;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map with primitive long keys, used to index issues by
+ * their number without boxing the keys.
+ *
+ * @param <V>
+ */
+public class LongMap<V> {
+
+	private static final long EMPTY = 0;
+
+	private long[] keys;
+	private Object[] values;
+	private int size = 0;
+	private boolean hasZero = false;
+	private V zeroValue;
+
+	public LongMap() {
+		this(16);
+	}
+
+	/**
+	 * @param expected number of entries expected
+	 */
+	public LongMap(int expected) {
+		int capacity = 16;
+		while (capacity * 3 < expected * 4)
+			capacity <<= 1;
+		keys = new long[capacity];
+		values = new Object[capacity];
+	}
+
+	private static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	private int slot(long key) {
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (keys[i] != EMPTY && keys[i] != key)
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		if (key == EMPTY)
+			return hasZero ? zeroValue : null;
+		int i = slot(key);
+		return keys[i] == EMPTY ? null : (V) values[i];
+	}
+
+	public boolean containsKey(long key) {
+		if (key == EMPTY)
+			return hasZero;
+		return keys[slot(key)] != EMPTY;
+	}
+
+	/**
+	 * @param key
+	 * @param value
+	 * @return the previous value, or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (key == EMPTY) {
+			V previous = zeroValue;
+			if (!hasZero)
+				size++;
+			hasZero = true;
+			zeroValue = value;
+			return previous;
+		}
+		int i = slot(key);
+		if (keys[i] == key) {
+			V previous = (V) values[i];
+			values[i] = value;
+			return previous;
+		}
+		keys[i] = key;
+		values[i] = value;
+		size++;
+		if (size * 4 > keys.length * 3)
+			resize();
+		return null;
+	}
+
+	private void resize() {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new Object[oldKeys.length * 2];
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldKeys[j] != EMPTY) {
+				int i = slot(oldKeys[j]);
+				keys[i] = oldKeys[j];
+				values[i] = oldValues[j];
+			}
+		}
+	}
+
+	/**
+	 * @return the keys in ascending order
+	 */
+	public long[] keys() {
+		long[] result = new long[size];
+		int n = 0;
+		if (hasZero)
+			result[n++] = EMPTY;
+		for (long key : keys) {
+			if (key != EMPTY)
+				result[n++] = key;
+		}
+		Arrays.sort(result);
+		return result;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		Arrays.fill(values, null);
+		size = 0;
+		hasZero = false;
+		zeroValue = null;
+	}
+}
@@ -0,0 +1,195 @@
+package com.SZZ.jiraAnalyser.entities;
+
+/**
+ * Single pass scanner of commit messages, replacing the regular expressions
+ * formerly compiled by Transaction, Storage and Link.
+ *
+ * A matcher is built once for a project key and can be shared by several
+ * threads. One scan of a lowercased message finds, with the same rules as
+ * the former patterns:
+ *  - the project key:    key[ ]*-[ ]*[0-9]+
+ *  - the bug numbers:    bug[# \t]*[0-9]+, pr[# \t]*[0-9]+,
+ *                        show_bug.cgi?id=[0-9]+, \[[0-9]+\], [0-9]+
+ *                        and the digits of a ^[a-zA-Z0-9]*$ message
+ *  - the fix keywords:   fix(e[ds])?|bugs?|defects?|patch
+ *  - a numeric message:  ^[0-9]*$
+ * For each bug number rule, only the first match is kept, as with find().
+ */
+public class MessageMatcher {
+
+	/**
+	 * Matcher without project key, for the rules not depending on it
+	 */
+	public static final MessageMatcher NO_PROJECT = new MessageMatcher(null);
+
+	private static final String BUG = "bug";
+	private static final String PR = "pr";
+	private static final String SHOW_BUG = "show_bug.cgi?id=";
+	private static final String[] KEYWORDS = { "fix", "bug", "defect", "patch" };
+
+	private final String key;
+
+	/**
+	 * @param projectName the project key, null to skip it
+	 */
+	public MessageMatcher(String projectName) {
+		this.key = projectName == null || projectName.isEmpty() ? null : projectName.toLowerCase();
+	}
+
+	/**
+	 * What a scan found in a message
+	 */
+	public static class Result {
+		private boolean projectKey = false;
+		private boolean keyword = false;
+		private boolean numeric = true;
+		private boolean word = true;
+		private String bug;
+		private String pr;
+		private String showBug;
+		private String bracket;
+		private String number;
+		private String wordDigits;
+
+		/**
+		 * @return true if the message refers to an issue of the project
+		 */
+		public boolean hasProjectKey() {
+			return projectKey;
+		}
+
+		/**
+		 * @return true if the message contains a fix keyword
+		 */
+		public boolean hasKeyword() {
+			return keyword;
+		}
+
+		/**
+		 * @return true if the message is only made of digits
+		 */
+		public boolean isNumeric() {
+			return numeric;
+		}
+
+		/**
+		 * @return the digits found by each bug number rule, null for the
+		 *         rules not matching
+		 */
+		public String[] getBugNumbers() {
+			return new String[] { bug, pr, showBug, bracket, number, word ? wordDigits : null };
+		}
+	}
+
+	/**
+	 * It scans a lowercased message
+	 * @param message
+	 * @return
+	 */
+	public Result match(String message) {
+		Result r = new Result();
+		int length = endOfLine(message);
+		StringBuilder digits = new StringBuilder();
+		for (int i = 0; i < message.length(); i++) {
+			char c = message.charAt(i);
+			if (i < length) {
+				if (!isDigit(c))
+					r.numeric = false;
+				if (isDigit(c))
+					digits.append(c);
+				else if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z'))
+					r.word = false;
+			}
+			if (key != null && !r.projectKey && c == key.charAt(0))
+				r.projectKey = projectKeyAt(message, i);
+			switch (c) {
+			case 'b':
+				if (r.bug == null && message.startsWith(BUG, i))
+					r.bug = numberAfterSeparators(message, i + BUG.length());
+				break;
+			case 'p':
+				if (r.pr == null && message.startsWith(PR, i))
+					r.pr = numberAfterSeparators(message, i + PR.length());
+				break;
+			case 's':
+				if (r.showBug == null && message.startsWith(SHOW_BUG, i))
+					r.showBug = number(message, i + SHOW_BUG.length());
+				break;
+			case '[':
+				if (r.bracket == null) {
+					String n = number(message, i + 1);
+					if (n != null && i + 1 + n.length() < message.length()
+							&& message.charAt(i + 1 + n.length()) == ']')
+						r.bracket = n;
+				}
+				break;
+			default:
+				if (r.number == null && isDigit(c))
+					r.number = number(message, i);
+				break;
+			}
+			if (!r.keyword)
+				for (String keyword : KEYWORDS)
+					if (c == keyword.charAt(0) && message.startsWith(keyword, i))
+						r.keyword = true;
+		}
+		r.wordDigits = digits.toString();
+		return r;
+	}
+
+	/*
+	 * key[ ]*-[ ]*[0-9]+ at position i
+	 */
+	private boolean projectKeyAt(String message, int i) {
+		if (!message.startsWith(key, i))
+			return false;
+		int j = i + key.length();
+		while (j < message.length() && message.charAt(j) == ' ')
+			j++;
+		if (j >= message.length() || message.charAt(j) != '-')
+			return false;
+		j++;
+		while (j < message.length() && message.charAt(j) == ' ')
+			j++;
+		return j < message.length() && isDigit(message.charAt(j));
+	}
+
+	/*
+	 * [# \t]*[0-9]+ at position i
+	 */
+	private static String numberAfterSeparators(String message, int i) {
+		while (i < message.length() && (message.charAt(i) == '#' || message.charAt(i) == ' '
+				|| message.charAt(i) == '\t'))
+			i++;
+		return number(message, i);
+	}
+
+	/*
+	 * [0-9]+ at position i, or null
+	 */
+	private static String number(String message, int i) {
+		int j = i;
+		while (j < message.length() && isDigit(message.charAt(j)))
+			j++;
+		return j > i ? message.substring(i, j) : null;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/*
+	 * Length of the message without a final line terminator, where $ matches
+	 */
+	private static int endOfLine(String message) {
+		int n = message.length();
+		if (n >= 2 && message.charAt(n - 2) == '\r' && message.charAt(n - 1) == '\n')
+			return n - 2;
+		if (n >= 1) {
+			char c = message.charAt(n - 1);
+			if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029')
+				return n - 1;
+		}
+		return n;
+	}
+}
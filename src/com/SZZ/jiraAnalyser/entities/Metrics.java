@@ -0,0 +1,347 @@
+package com.SZZ.jiraAnalyser.entities;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures of a mining run: duration of each stage, latency histograms of
+ * the repeated operations (diff, blame, previous commit lookup, Jira page),
+ * counters and cache hits and misses.
+ *
+ * One instance is shared by the objects taking part in a run and can be
+ * updated by several threads. Latencies are counted in buckets of fixed
+ * bounds from 10 us to 100 s, so recording costs a few atomic increments
+ * whatever the number of operations.
+ *
+ * The measures are written as JSON, or in the Prometheus text format when
+ * the file name ends with .prom, at the end of a run and optionally at a
+ * fixed interval while it runs.
+ */
+public class Metrics {
+
+	/*
+	 * Upper bounds of the latency buckets in microseconds, a last bucket
+	 * counting the longer operations
+	 */
+	private static final long[] BOUNDS = { 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000, 50000,
+			100000, 200000, 500000, 1000000, 2000000, 5000000, 10000000, 20000000, 50000000, 100000000 };
+
+	private final Map<String, Long> stages = new LinkedHashMap<String, Long>();
+	private final Map<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+	private final Map<String, Histogram> latencies = new ConcurrentHashMap<String, Histogram>();
+	private final Map<String, long[]> caches = new ConcurrentHashMap<String, long[]>();
+	private ScheduledExecutorService reporter;
+
+	/**
+	 * Latency histogram of an operation
+	 */
+	public static class Histogram {
+		private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong sum = new AtomicLong();
+		private final AtomicLong max = new AtomicLong();
+
+		/**
+		 * @param nanos duration of an operation
+		 */
+		public void record(long nanos) {
+			long micros = nanos / 1000;
+			int i = 0;
+			while (i < BOUNDS.length && micros > BOUNDS[i])
+				i++;
+			buckets.incrementAndGet(i);
+			count.incrementAndGet();
+			sum.addAndGet(nanos);
+			long m = max.get();
+			while (m < nanos && !max.compareAndSet(m, nanos))
+				m = max.get();
+		}
+
+		public long getCount() {
+			return count.get();
+		}
+
+		/**
+		 * @return the total duration in nanoseconds
+		 */
+		public long getSum() {
+			return sum.get();
+		}
+
+		/**
+		 * @return the longest duration in nanoseconds
+		 */
+		public long getMax() {
+			return max.get();
+		}
+
+		/**
+		 * @param q quantile, from 0 to 1
+		 * @return the upper bound in microseconds of the bucket holding the
+		 *         quantile, at most the maximum
+		 */
+		public long getQuantile(double q) {
+			long total = count.get();
+			long seen = 0;
+			for (int i = 0; i < BOUNDS.length; i++) {
+				seen += buckets.get(i);
+				if (total > 0 && seen >= q * total)
+					return Math.min(BOUNDS[i], max.get() / 1000);
+			}
+			return max.get() / 1000;
+		}
+	}
+
+	/**
+	 * It records the duration of a stage, added to the previous ones of the
+	 * same name
+	 * @param stage
+	 * @param millis
+	 */
+	public synchronized void stage(String stage, long millis) {
+		Long previous = stages.get(stage);
+		stages.put(stage, previous == null ? millis : previous + millis);
+	}
+
+	/**
+	 * @return the duration in milliseconds of each stage, in the order they
+	 *         were first recorded
+	 */
+	public synchronized Map<String, Long> getStages() {
+		return new LinkedHashMap<String, Long>(stages);
+	}
+
+	/**
+	 * It records the duration of an operation
+	 * @param operation
+	 * @param nanos
+	 */
+	public void record(String operation, long nanos) {
+		Histogram histogram = latencies.get(operation);
+		if (histogram == null)
+			histogram = latencies.computeIfAbsent(operation, o -> new Histogram());
+		histogram.record(nanos);
+	}
+
+	/**
+	 * @param operation
+	 * @return the histogram of an operation, null if never recorded
+	 */
+	public Histogram getLatency(String operation) {
+		return latencies.get(operation);
+	}
+
+	/**
+	 * @param counter
+	 * @param delta
+	 */
+	public void increment(String counter, long delta) {
+		AtomicLong value = counters.get(counter);
+		if (value == null)
+			value = counters.computeIfAbsent(counter, c -> new AtomicLong());
+		value.addAndGet(delta);
+	}
+
+	public void increment(String counter) {
+		increment(counter, 1);
+	}
+
+	/**
+	 * @param counter
+	 * @return the value of a counter, 0 if never incremented
+	 */
+	public long getCounter(String counter) {
+		AtomicLong value = counters.get(counter);
+		return value == null ? 0 : value.get();
+	}
+
+	/**
+	 * It sets the hits and misses of a cache, for the caches keeping their
+	 * own counts
+	 * @param cache
+	 * @param hits
+	 * @param misses
+	 */
+	public void cache(String cache, long hits, long misses) {
+		caches.put(cache, new long[] { hits, misses });
+	}
+
+	/**
+	 * It counts a lookup of a cache
+	 * @param cache
+	 * @param hit
+	 */
+	public void cacheLookup(String cache, boolean hit) {
+		increment("cache." + cache + (hit ? ".hits" : ".misses"));
+	}
+
+	/**
+	 * It writes the measures every interval seconds until stopReporting()
+	 * @param file
+	 * @param interval seconds
+	 */
+	public synchronized void startReporting(final File file, long interval) {
+		stopReporting();
+		reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "metrics");
+			t.setDaemon(true);
+			return t;
+		});
+		reporter.scheduleAtFixedRate(() -> {
+			try {
+				write(file);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}, interval, interval, TimeUnit.SECONDS);
+	}
+
+	public synchronized void stopReporting() {
+		if (reporter != null) {
+			reporter.shutdownNow();
+			reporter = null;
+		}
+	}
+
+	/**
+	 * It writes the measures, through a temporary file so that a reader
+	 * never sees a partial file
+	 * @param file JSON, or Prometheus text when the name ends with .prom
+	 * @throws IOException
+	 */
+	public synchronized void write(File file) throws IOException {
+		File part = new File(file.getPath() + ".part");
+		try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(part)))) {
+			if (file.getName().endsWith(".prom"))
+				writePrometheus(out);
+			else
+				writeJson(out);
+		}
+		if (file.exists())
+			file.delete();
+		if (!part.renameTo(file))
+			throw new IOException("Cannot write " + file);
+	}
+
+	/*
+	 * Hits and misses of every cache, counted here or set by cache()
+	 */
+	private Map<String, long[]> cacheCounts() {
+		Map<String, long[]> result = new TreeMap<String, long[]>(caches);
+		for (String counter : counters.keySet()) {
+			if (counter.startsWith("cache.") && counter.endsWith(".hits")) {
+				String cache = counter.substring("cache.".length(), counter.length() - ".hits".length());
+				result.put(cache, new long[] { getCounter(counter), getCounter("cache." + cache + ".misses") });
+			} else if (counter.startsWith("cache.") && counter.endsWith(".misses")) {
+				String cache = counter.substring("cache.".length(), counter.length() - ".misses".length());
+				result.put(cache, new long[] { getCounter("cache." + cache + ".hits"), getCounter(counter) });
+			}
+		}
+		return result;
+	}
+
+	private void writeJson(PrintWriter out) {
+		out.println("{");
+		out.println("  \"stages\": {");
+		int i = 0;
+		Map<String, Long> stages = getStages();
+		for (Map.Entry<String, Long> e : stages.entrySet())
+			out.println("    \"" + e.getKey() + "\": {\"seconds\": " + seconds(e.getValue() * 1000000)
+					+ "}" + (++i < stages.size() ? "," : ""));
+		out.println("  },");
+		out.println("  \"counters\": {");
+		i = 0;
+		Map<String, AtomicLong> counters = new TreeMap<String, AtomicLong>(this.counters);
+		for (Map.Entry<String, AtomicLong> e : counters.entrySet())
+			out.println("    \"" + e.getKey() + "\": " + e.getValue().get() + (++i < counters.size() ? "," : ""));
+		out.println("  },");
+		out.println("  \"latencies\": {");
+		i = 0;
+		Map<String, Histogram> latencies = new TreeMap<String, Histogram>(this.latencies);
+		for (Map.Entry<String, Histogram> e : latencies.entrySet()) {
+			Histogram h = e.getValue();
+			StringBuilder buckets = new StringBuilder();
+			for (int b = 0; b <= BOUNDS.length; b++) {
+				if (h.buckets.get(b) == 0)
+					continue;
+				if (buckets.length() > 0)
+					buckets.append(", ");
+				buckets.append("{\"le_ms\": ").append(b < BOUNDS.length ? ms(BOUNDS[b]) : "\"+Inf\"")
+						.append(", \"count\": ").append(h.buckets.get(b)).append('}');
+			}
+			out.println("    \"" + e.getKey() + "\": {\"count\": " + h.getCount() + ", \"sum_seconds\": "
+					+ seconds(h.getSum()) + ", \"max_ms\": " + ms(h.getMax() / 1000) + ", \"p50_ms\": "
+					+ ms(h.getQuantile(0.5)) + ", \"p90_ms\": " + ms(h.getQuantile(0.9)) + ", \"p99_ms\": "
+					+ ms(h.getQuantile(0.99)) + ", \"buckets\": [" + buckets + "]}"
+					+ (++i < latencies.size() ? "," : ""));
+		}
+		out.println("  },");
+		out.println("  \"caches\": {");
+		i = 0;
+		Map<String, long[]> caches = cacheCounts();
+		for (Map.Entry<String, long[]> e : caches.entrySet()) {
+			long[] c = e.getValue();
+			out.println("    \"" + e.getKey() + "\": {\"hits\": " + c[0] + ", \"misses\": " + c[1]
+					+ ", \"hit_rate\": " + format(c[0] + c[1] == 0 ? 0 : (double) c[0] / (c[0] + c[1]))
+					+ "}" + (++i < caches.size() ? "," : ""));
+		}
+		out.println("  }");
+		out.println("}");
+	}
+
+	private void writePrometheus(PrintWriter out) {
+		out.println("# TYPE szz_stage_seconds gauge");
+		for (Map.Entry<String, Long> e : getStages().entrySet())
+			out.println("szz_stage_seconds{stage=\"" + e.getKey() + "\"} " + seconds(e.getValue() * 1000000));
+		out.println("# TYPE szz_events_total counter");
+		for (Map.Entry<String, AtomicLong> e : new TreeMap<String, AtomicLong>(counters).entrySet())
+			out.println("szz_events_total{name=\"" + e.getKey() + "\"} " + e.getValue().get());
+		out.println("# TYPE szz_latency_seconds histogram");
+		for (Map.Entry<String, Histogram> e : new TreeMap<String, Histogram>(latencies).entrySet()) {
+			Histogram h = e.getValue();
+			String label = "operation=\"" + e.getKey() + "\"";
+			long cumulative = 0;
+			for (int b = 0; b < BOUNDS.length; b++) {
+				cumulative += h.buckets.get(b);
+				out.println("szz_latency_seconds_bucket{" + label + ",le=\"" + seconds(BOUNDS[b] * 1000) + "\"} "
+						+ cumulative);
+			}
+			out.println("szz_latency_seconds_bucket{" + label + ",le=\"+Inf\"} " + h.getCount());
+			out.println("szz_latency_seconds_sum{" + label + "} " + seconds(h.getSum()));
+			out.println("szz_latency_seconds_count{" + label + "} " + h.getCount());
+		}
+		// the samples of a family follow its TYPE line
+		Map<String, long[]> caches = cacheCounts();
+		out.println("# TYPE szz_cache_hits_total counter");
+		for (Map.Entry<String, long[]> e : caches.entrySet())
+			out.println("szz_cache_hits_total{cache=\"" + e.getKey() + "\"} " + e.getValue()[0]);
+		out.println("# TYPE szz_cache_misses_total counter");
+		for (Map.Entry<String, long[]> e : caches.entrySet())
+			out.println("szz_cache_misses_total{cache=\"" + e.getKey() + "\"} " + e.getValue()[1]);
+	}
+
+	private static String seconds(long nanos) {
+		return format(nanos / 1e9);
+	}
+
+	private static String ms(long micros) {
+		return format(micros / 1e3);
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.6f", value);
+	}
+}
@@ -0,0 +1,119 @@
+package com.SZZ.jiraAnalyser.entities;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * State persisted between two analyses of the same project, used to mine
+ * only what is new since the last run. It stores the HEAD commit analysed by
+ * the last completed run, the highest Jira issue number downloaded and the
+ * time of the last complete Jira synchronization.
+ *
+ * The state is saved as projectName_state.properties next to the other
+ * files of the project.
+ */
+public class MiningState {
+
+	private static final String LAST_HEAD = "lastHead";
+	private static final String LAST_ISSUE = "lastIssue";
+	private static final String LAST_SYNC = "lastSync";
+
+	private final File file;
+	private final Properties properties = new Properties();
+
+	/**
+	 * It loads the state of a project, empty if it was never saved
+	 * @param projectName
+	 */
+	public MiningState(String projectName) {
+		this(null, projectName);
+	}
+
+	/**
+	 * It loads the state of a project kept in a directory
+	 * @param directory null for the working directory
+	 * @param projectName
+	 */
+	public MiningState(File directory, String projectName) {
+		this.file = new File(directory, projectName + "_state.properties");
+		if (file.exists()) {
+			try (InputStream in = new FileInputStream(file)) {
+				properties.load(in);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the HEAD analysed by the last completed run, or null
+	 */
+	public String getLastHead() {
+		return properties.getProperty(LAST_HEAD);
+	}
+
+	public void setLastHead(String sha) {
+		if (sha == null)
+			properties.remove(LAST_HEAD);
+		else
+			properties.setProperty(LAST_HEAD, sha);
+	}
+
+	/**
+	 * @return the highest Jira issue number downloaded, 0 if unknown
+	 */
+	public long getLastIssue() {
+		try {
+			return Long.parseLong(properties.getProperty(LAST_ISSUE, "0"));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	public void setLastIssue(long number) {
+		properties.setProperty(LAST_ISSUE, number + "");
+	}
+
+	/**
+	 * @return epoch millis of the last complete Jira synchronization, 0 if never
+	 */
+	public long getLastSync() {
+		try {
+			return Long.parseLong(properties.getProperty(LAST_SYNC, "0"));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	public void setLastSync(long time) {
+		properties.setProperty(LAST_SYNC, time + "");
+	}
+
+	/**
+	 * It writes the state back to its file
+	 */
+	public synchronized void save() {
+		try (OutputStream out = new FileOutputStream(file)) {
+			properties.store(out, "OpenSZZ mining state");
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * It deletes the saved state, so that the next run mines everything
+	 */
+	public void reset() {
+		properties.clear();
+		file.delete();
+	}
+}
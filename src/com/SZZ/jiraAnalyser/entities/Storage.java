@@ -1,5 +1,6 @@
 package  com.SZZ.jiraAnalyser.entities;
 
+import java.io.File;
 import java.net.URL;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -22,6 +23,10 @@ public class Storage {
 	}
 	
 	private Git git = null;
+	private String head = null;
+	private boolean incremental = false;
+	private int commitCount = 0;
+	private Metrics metrics = new Metrics();
 	private final Pattern pGit = Pattern.compile(".+\\.git$");
 	
 	public Storage(String projectName) {
@@ -30,6 +35,18 @@ public class Storage {
 				);
 	}
 	
+	/**
+	 * @param projectName
+	 * @param directory where the repository is cloned, null for the working directory
+	 */
+	public Storage(String projectName, File directory) {
+		this(projectName);
+		if (directory != null) {
+			fileStoragePath = directory.getAbsoluteFile().toPath();
+			fileStoragePath.toFile().mkdirs();
+		}
+	}
+	
 	
 	/**
 	 * Gets a list of presumed bug-fixing-commits
@@ -38,39 +55,117 @@ public class Storage {
 	 * @return
 	 */
 	public List<Transaction> checkoutCvs(URL url, String projectName) {
-		List<Transaction> list = new ArrayList<Transaction>();
+		return checkoutCvs(url, projectName, null);
+	}
+
+	/**
+	 * Gets a list of presumed bug-fixing-commits added after the commit since
+	 * @param url
+	 * @param projectName
+	 * @param since last analysed commit, null for the whole history
+	 * @return
+	 */
+	public List<Transaction> checkoutCvs(URL url, String projectName, String since) {
 		List<Transaction> result = new ArrayList<Transaction>();
+		try {
+			checkoutCvs(url, projectName, since, result::add);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return result;
+	}
+
+	/**
+	 * It passes the presumed bug-fixing-commits added after the commit since
+	 * to handler while the log is being read. The handler runs on the calling
+	 * thread.
+	 * @param url
+	 * @param projectName
+	 * @param since last analysed commit, null for the whole history
+	 * @param handler
+	 * @throws Exception if the repository cannot be read or the handler fails
+	 */
+	public void checkoutCvs(URL url, String projectName, String since, TransactionManager.Handler handler)
+			throws Exception {
 		Matcher mGit = pGit.matcher(url.toString());
 		if(mGit.find()) {
-			this.git = new Git(fileStoragePath, url);
-			try {
-				this.git.cloneRepository();
-				this.git.pullUpdates();
-				this.git.saveLog();
-				list = git.getCommits();
-				for (Transaction t : list){
-					if (isBugPresumedFixing(t.getComment(),projectName))
-						result.add(t);}
-			} catch (Exception e) {
-				e.printStackTrace();
+			if (this.git == null)
+				this.git = new Git(fileStoragePath, url);
+			this.git.setMetrics(metrics);
+			long start = System.currentTimeMillis();
+			this.git.cloneRepository();
+			this.git.pullUpdates();
+			this.git.refresh();
+			metrics.stage("clone", System.currentTimeMillis() - start);
+			start = System.currentTimeMillis();
+			MessageMatcher matcher = new MessageMatcher(projectName);
+			int presumed = 0;
+			try (CommitLog log = git.walkCommits(since)) {
+				this.head = log.getHead() == null ? null : log.getHead().getName();
+				this.incremental = log.getSince() != null;
+				for (Transaction t : log){
+					commitCount++;
+					if (isBugPresumedFixing(t,matcher)) {
+						presumed++;
+						handler.transaction(t);
+					}
+				}
+			} finally {
+				metrics.stage("log", System.currentTimeMillis() - start);
+				metrics.increment("commits", commitCount);
+				metrics.increment("commits.presumedFixing", presumed);
 			}
 		}
-		return result;
 	}
 	
 	/**
 	 * It controls whether it contains at least a Jira issue
-	 * @param comment
-	 * @param projectName
+	 * @param t
+	 * @param matcher matcher of the project key
 	 * @return
 	 */
-	private boolean isBugPresumedFixing(String comment, String projectName){
-	    String pattern = projectName.toLowerCase()+"[ ]*-[ ]*[0-9]+";
-	    Pattern r = Pattern.compile(pattern);
-	    Matcher m = r.matcher(comment);
-	    return m.find();
+	private boolean isBugPresumedFixing(Transaction t, MessageMatcher matcher){
+	    return t.match(matcher).hasProjectKey();
 	}
 	
+	/**
+	 * @return the HEAD commit of the last checkout
+	 */
+	public String getHead(){
+		return this.head;
+	}
+
+	/**
+	 * @return whether the last checkout skipped already analysed commits
+	 */
+	public boolean isIncremental(){
+		return this.incremental;
+	}
+
+	/**
+	 * @return the number of commits read by the last checkout
+	 */
+	public int getCommitCount(){
+		return this.commitCount;
+	}
+
+	/**
+	 * It sets where the clone, the log and the repository operations are measured
+	 * @param metrics
+	 */
+	public void setMetrics(Metrics metrics){
+		this.metrics = metrics;
+	}
+
+	/**
+	 * It makes the checkout use a Git already opened, with its session and
+	 * caches, instead of a new one
+	 * @param git
+	 */
+	public void setGit(Git git){
+		this.git = git;
+	}
+
 	public Git getGit(){
 		return this.git;
 	}
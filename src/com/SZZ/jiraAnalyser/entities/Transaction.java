@@ -7,8 +7,6 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class Transaction {
 	
@@ -69,6 +67,7 @@ public class Transaction {
 	private final String author;
 	private final String comment;
 	private final List<FileInfo> filesAffected;
+	private MessageMatcher.Result match;
 	
 	public Transaction(
 			String hashId, String timestamp, String author, String comment,
@@ -89,61 +88,25 @@ public class Transaction {
 		this.filesAffected = filesAffected;
 	}
 	
+	public Transaction(
+			String hashId, Date timestamp, String author, String comment,
+			List<FileInfo> filesAffected) {
+		this.hashId = hashId;
+		this.timestamp = timestamp;
+		this.author = author;
+		this.comment = comment.toLowerCase();
+		this.filesAffected = filesAffected;
+	}
 	
-	/*
-	 * Bug Number Patterns
-	 */
-	private static final Pattern patter1 = Pattern.compile("bug[# \t]*[0-9]+", Pattern.CASE_INSENSITIVE);
-	private static final Pattern patter2 = Pattern.compile("pr[# \t]*[0-9]+", Pattern.CASE_INSENSITIVE);
-	private static final Pattern patter3 = Pattern.compile("show\\_bug\\.cgi\\?id=[0-9]+", Pattern.CASE_INSENSITIVE);
-	private static final Pattern patter4 = Pattern.compile("\\[[0-9]+\\]", Pattern.CASE_INSENSITIVE);
-
-	/*
-	 * Plain Number Pattern
-	 */
-	private static final Pattern patter5 = Pattern.compile("[0-9]+", Pattern.CASE_INSENSITIVE);
-
-	/*
-	 * Keyword Pattern 
-	 */
- 	private static final Pattern patter6 = Pattern.compile("(fix(e[ds])?|bugs?|defects?|patch)+", Pattern.CASE_INSENSITIVE);
-	
-	/*
-	 * Word Pattern 
-	 */
-	private static final Pattern patter7 = Pattern.compile("^[a-zA-Z0-9]*$", Pattern.CASE_INSENSITIVE);
 	
-		
 	private List<Long> bugIds = new LinkedList<Long>();
 	
 	public boolean hasBugId() {
-		//System.out.println(comment);
-        Matcher p1 = Transaction.patter1.matcher(comment);
-		Matcher p2 = Transaction.patter2.matcher(comment);
-		Matcher p3 = Transaction.patter3.matcher(comment);
-		Matcher p4 = Transaction.patter4.matcher(comment);
-		Matcher p5 = Transaction.patter5.matcher(comment);
-		Matcher p6 = Transaction.patter6.matcher(comment);
- 		Matcher p7 = Transaction.patter7.matcher(comment);
-		
-		boolean b1 = p1.find();
-		boolean b2 = p2.find();
-		boolean b3 = p3.find();
-		boolean b4 = p4.find();
-		boolean b5 = p5.find();
- 		boolean b6 = p6.find();
-		boolean b7 = p7.find();
-		
 		Set<String> results = new HashSet<String>();
+		for (String s : getMatch().getBugNumbers())
+			if (s != null)
+				results.add(s);
 
-			if (b1) results.add(p1.group().replaceAll("[^\\d]", ""));
-			if (b2) results.add(p2.group().replaceAll("[^\\d]", ""));
-			if (b3) results.add(p3.group().replaceAll("[^\\d]", ""));
-			if (b4) results.add(p4.group().replaceAll("[^\\d]", ""));
-			if (b5) results.add(p5.group().replaceAll("[^\\d]", ""));
-			if (b6) results.add(p6.group().replaceAll("[^\\d.]", ""));
-			if (b7) results.add(p7.group().replaceAll("[^\\d.]", ""));
-			
 			for(String s : results) {
 				if (!s.isEmpty())
 					bugIds.add(Long.parseLong(s));
@@ -151,6 +114,27 @@ public class Transaction {
 		
 			return (bugIds.size() > 0);
 	}
+
+	/**
+	 * It returns what the scan of the comment found, scanning it without
+	 * project key if it was not scanned yet
+	 * @return
+	 */
+	public MessageMatcher.Result getMatch() {
+		if (match == null)
+			match = MessageMatcher.NO_PROJECT.match(comment);
+		return match;
+	}
+
+	/**
+	 * It scans the comment with the matcher of a project and keeps the result
+	 * @param matcher
+	 * @return
+	 */
+	public MessageMatcher.Result match(MessageMatcher matcher) {
+		match = matcher.match(comment);
+		return match;
+	}
 	
 	public List<Long> getBugIds() {
 		return this.bugIds;
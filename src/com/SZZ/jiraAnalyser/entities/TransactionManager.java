@@ -1,5 +1,6 @@
 package  com.SZZ.jiraAnalyser.entities;
 
+import java.io.File;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -14,6 +15,19 @@ public class TransactionManager {
 	//private List<Transaction> totalTransactions;
 	
 	private Storage storage;
+	
+	private Metrics metrics = new Metrics();
+	
+	private File directory = null;
+	
+	private Git sharedGit = null;
+
+	/**
+	 * Receives the commits one at a time while the log is read
+	 */
+	public interface Handler {
+		void transaction(Transaction t) throws Exception;
+	}
 
 	/**
 	 * Gets transaction containing at least one number or keyword that suggests it could be a bug
@@ -21,14 +35,27 @@ public class TransactionManager {
 	 * @return
 	 */
 	public List<Transaction> getBugFixingCommits(URL url, String projectName) {
+		return getBugFixingCommits(url, projectName, null);
+	}
+
+	/**
+	 * Gets transaction added after the commit since containing at least one number or keyword that suggests it could be a bug
+	 * @param url
+	 * @param projectName
+	 * @param since last analysed commit, null for the whole history
+	 * @return
+	 */
+	public List<Transaction> getBugFixingCommits(URL url, String projectName, String since) {
 		if (this.transactions != null) return this.transactions;
 		
 		this.transactions = new ArrayList<Transaction>(); 
 	
 		// TODO: Parse stuff from url
 		try {
-			storage = new Storage(projectName);
-			transactions = this.storage.checkoutCvs(url,projectName);
+			storage = new Storage(projectName, directory);
+			storage.setMetrics(metrics);
+			storage.setGit(sharedGit);
+			transactions = this.storage.checkoutCvs(url,projectName,since);
 		} catch (Exception e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -44,8 +71,84 @@ public class TransactionManager {
 		return transactions;
 	}
 	
+	/**
+	 * It passes the transactions added after the commit since containing a
+	 * bug id to handler as soon as they are read from the log. The handler
+	 * runs on the calling thread.
+	 * @param url
+	 * @param projectName
+	 * @param since last analysed commit, null for the whole history
+	 * @param handler
+	 * @throws Exception if the repository cannot be read or the handler fails
+	 */
+	public void streamBugFixingCommits(URL url, String projectName, String since, Handler handler)
+			throws Exception {
+		storage = new Storage(projectName, directory);
+		storage.setMetrics(metrics);
+		storage.setGit(sharedGit);
+		storage.checkoutCvs(url, projectName, since, t -> {
+			if (t.hasBugId())
+				handler.transaction(t);
+		});
+	}
+
+	/**
+	 * @return the HEAD commit analysed, null if the checkout failed
+	 */
+	public String getHead(){
+		return this.storage == null ? null : this.storage.getHead();
+	}
+
+	/**
+	 * @return whether only commits after the last analysed one were read
+	 */
+	public boolean isIncremental(){
+		return this.storage != null && this.storage.isIncremental();
+	}
+
+	/**
+	 * @return the number of commits read, fixing or not
+	 */
+	public int getCommitCount(){
+		return this.storage == null ? 0 : this.storage.getCommitCount();
+	}
+
+	/**
+	 * It sets where the reading of the commits is measured
+	 * @param metrics
+	 */
+	public void setMetrics(Metrics metrics){
+		this.metrics = metrics;
+	}
+
+	/**
+	 * It sets where the repository is cloned
+	 * @param directory null (default) for the working directory
+	 */
+	public void setDirectory(File directory){
+		this.directory = directory;
+	}
+
+	/**
+	 * It makes the commits read with a Git kept open between analyses,
+	 * which close() leaves open
+	 * @param git null (default) to open a new one for each analysis
+	 */
+	public void setGit(Git git){
+		this.sharedGit = git;
+	}
+
 	//This is a message
 	public Git getGit(){
-		return this.storage.getGit();
+		return this.storage == null ? null : this.storage.getGit();
+	}
+
+	/**
+	 * It closes the repository session opened for the analysis, unless it
+	 * was given by setGit()
+	 */
+	public void close(){
+		if (this.storage != null && this.storage.getGit() != null && this.storage.getGit() != sharedGit)
+			this.storage.getGit().close();
 	}
 }
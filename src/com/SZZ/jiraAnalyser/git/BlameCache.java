@@ -0,0 +1,176 @@
+package com.SZZ.jiraAnalyser.git;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Bounded LRU cache of blamed lines keyed by (starting commit, file path).
+ *
+ * An entry holds the source commit of every line of the file, null for the
+ * lines not blamed yet. Entries are never modified once stored: a blame of
+ * more lines stores a new array. The size of every entry is estimated from
+ * the number of lines of the blamed file; once the estimated total goes over
+ * the memory budget the least recently used entries are evicted. Hit, miss
+ * and eviction counters are kept so the budget can be tuned on large
+ * repositories.
+ */
+public class BlameCache {
+
+	/*
+	 * Default memory budget: 64 MB
+	 */
+	public static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+
+	/*
+	 * Estimated bytes per blamed line (array slot and share of the source
+	 * commit ids) and fixed cost per entry
+	 */
+	private static final long BYTES_PER_LINE = 48;
+	private static final long BYTES_PER_ENTRY = 256;
+
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(256, 0.75f, true);
+	private long budget;
+	private long usedBytes = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	public BlameCache() {
+		this(DEFAULT_BUDGET);
+	}
+
+	/**
+	 * @param budget maximum estimated size in bytes of the cached results
+	 */
+	public BlameCache(long budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * It returns the cached blame of file starting at commitSha, or null
+	 *
+	 * @param commitSha
+	 * @param file
+	 * @return the source commit of each line, null for lines not blamed
+	 */
+	public synchronized ObjectId[] get(String commitSha, String file) {
+		Entry entry = entries.get(new Key(commitSha, file));
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.lines;
+	}
+
+	/**
+	 * It stores the blamed lines of a file, replacing the previous entry
+	 *
+	 * @param commitSha
+	 * @param file
+	 * @param lines source commit of each line, null for lines not blamed
+	 */
+	public synchronized void put(String commitSha, String file, ObjectId[] lines) {
+		long size = BYTES_PER_ENTRY + BYTES_PER_LINE * lines.length;
+		if (size > budget)
+			return;
+		Entry previous = entries.put(new Key(commitSha, file), new Entry(lines, size));
+		if (previous != null)
+			usedBytes -= previous.size;
+		usedBytes += size;
+		evict();
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+		while (usedBytes > budget && it.hasNext()) {
+			usedBytes -= it.next().getValue().size;
+			it.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * It changes the memory budget, evicting entries if needed
+	 *
+	 * @param budget bytes
+	 */
+	public synchronized void setBudget(long budget) {
+		this.budget = budget;
+		evict();
+	}
+
+	public synchronized long getBudget() {
+		return budget;
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		usedBytes = 0;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	@Override
+	public synchronized String toString() {
+		long total = hits + misses;
+		double hitRate = total == 0 ? 0 : ((double) hits / (double) total) * 100;
+		return "Blame cache: " + entries.size() + " entries, " + (usedBytes / 1024) + "/" + (budget / 1024)
+				+ " KB, hits " + hits + ", misses " + misses + " (" + String.format("%.1f", hitRate)
+				+ "% hit rate), evictions " + evictions;
+	}
+
+	private static final class Key {
+		private final String commitSha;
+		private final String file;
+
+		private Key(String commitSha, String file) {
+			this.commitSha = commitSha;
+			this.file = file;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return commitSha.equals(k.commitSha) && file.equals(k.file);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * commitSha.hashCode() + file.hashCode();
+		}
+	}
+
+	private static final class Entry {
+		private final ObjectId[] lines;
+		private final long size;
+
+		private Entry(ObjectId[] lines, long size) {
+			this.lines = lines;
+			this.size = size;
+		}
+	}
+}
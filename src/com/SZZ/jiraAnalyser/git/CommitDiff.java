@@ -0,0 +1,120 @@
+package com.SZZ.jiraAnalyser.git;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Lines removed by a commit from each of a set of files, compared with its
+ * first parent.
+ *
+ * Both trees are walked once, restricted to the requested paths, and the
+ * removed ranges are indexed by exact path, so that every file of a commit
+ * is looked up without diffing the commit again. Files added or deleted by
+ * the commit have no removed lines: as with the unified diff matched on its
+ * new path that this replaces, a deleted file is not blamed. The result is
+ * read only and can be shared by several threads.
+ */
+public class CommitDiff {
+
+	private static final int[] NONE = new int[0];
+
+	private final String commitId;
+	private final Map<String, int[]> deleted;
+
+	private CommitDiff(String commitId, Map<String, int[]> deleted) {
+		this.commitId = commitId;
+		this.deleted = deleted;
+	}
+
+	/**
+	 * It diffs a commit against its first parent for the given paths
+	 * @param session
+	 * @param commit
+	 * @param paths repository paths of the files
+	 * @param algorithm
+	 * @return
+	 * @throws IOException
+	 */
+	static CommitDiff compute(RepositorySession session, RevCommit commit, Collection<String> paths,
+			DiffAlgorithm algorithm) throws IOException {
+		Map<String, int[]> deleted = new HashMap<String, int[]>();
+		if (commit.getParentCount() == 0 || paths.isEmpty())
+			return new CommitDiff(commit.getName(), deleted);
+		RevCommit parent = session.parseCommit(commit.getParent(0));
+		ObjectReader reader = session.getReader();
+		try (TreeWalk walk = new TreeWalk(reader)) {
+			walk.addTree(parent.getTree());
+			walk.addTree(commit.getTree());
+			walk.setRecursive(true);
+			walk.setFilter(AndTreeFilter.create(PathFilterGroup.createFromStrings(paths), TreeFilter.ANY_DIFF));
+			while (walk.next()) {
+				if (walk.getFileMode(0) == FileMode.MISSING || walk.getFileMode(1) == FileMode.MISSING)
+					continue;
+				deleted.put(walk.getPathString(),
+						deletedLines(reader, walk.getObjectId(0), walk.getObjectId(1), algorithm));
+			}
+		}
+		return new CommitDiff(commit.getName(), deleted);
+	}
+
+	private static int[] deletedLines(ObjectReader reader, ObjectId oldId, ObjectId newId, DiffAlgorithm algorithm)
+			throws IOException {
+		byte[] oldContent = reader.open(oldId, Constants.OBJ_BLOB).getBytes();
+		if (RawText.isBinary(oldContent))
+			return NONE;
+		byte[] newContent = reader.open(newId, Constants.OBJ_BLOB).getBytes();
+		if (RawText.isBinary(newContent))
+			return NONE;
+		EditList edits = algorithm.diff(RawTextComparator.DEFAULT, new RawText(oldContent), new RawText(newContent));
+		int[] ranges = new int[edits.size() * 2];
+		int n = 0;
+		for (Edit edit : edits) {
+			if (edit.getLengthA() > 0) {
+				ranges[n++] = edit.getBeginA();
+				ranges[n++] = edit.getEndA();
+			}
+		}
+		return n == ranges.length ? ranges : Arrays.copyOf(ranges, n);
+	}
+
+	/**
+	 * Removed line ranges of a file, as pairs [begin, end) of 0-based line
+	 * numbers in the version of the parent
+	 * @param path
+	 * @return the ranges, empty if the file was added or deleted, is binary
+	 *         or no line was removed
+	 */
+	public int[] getDeletedLines(String path) {
+		int[] ranges = deleted.get(path);
+		return ranges == null ? NONE : ranges;
+	}
+
+	public String getCommitId() {
+		return commitId;
+	}
+
+	/**
+	 * @return the number of files changed among the requested ones
+	 */
+	public int size() {
+		return deleted.size();
+	}
+}
@@ -0,0 +1,189 @@
+package com.SZZ.jiraAnalyser.git;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.eclipse.jgit.diff.DiffConfig;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import com.SZZ.jiraAnalyser.entities.Transaction;
+import com.SZZ.jiraAnalyser.entities.Transaction.FileInfo;
+import com.SZZ.jiraAnalyser.entities.Transaction.FileStatus;
+
+/**
+ * In-process equivalent of "git log --name-status -M100%" starting from HEAD.
+ *
+ * Commits are walked newest first with a RevWalk and every commit is diffed
+ * against its parent with a TreeWalk and exact rename detection. Transactions
+ * are produced one at a time while iterating, so neither the git binary nor
+ * a temporary log file is needed. As with git log, merge commits have no
+ * affected files and the root commit is diffed against the empty tree.
+ *
+ * When a previous head is given, only the commits not reachable from it are
+ * produced, as with "git log previous..HEAD".
+ *
+ * The walk uses the reader of the calling thread and must be consumed by
+ * that thread. It is released when the iteration ends or on close().
+ */
+public class CommitLog implements Iterable<Transaction>, Closeable {
+
+	private final ObjectReader reader;
+	private final RevWalk revWalk;
+	private final TreeWalk treeWalk;
+	private final RenameDetector renameDetector;
+	private final ObjectId head;
+	private final ObjectId since;
+	private RevCommit next;
+	private boolean closed = false;
+
+	/**
+	 * @param session
+	 * @param start commit to start from, usually HEAD
+	 * @throws IOException
+	 */
+	public CommitLog(RepositorySession session, ObjectId start) throws IOException {
+		this(session, start, null);
+	}
+
+	/**
+	 * @param session
+	 * @param start commit to start from, usually HEAD
+	 * @param since commit already analysed, its history is skipped. It may be null.
+	 * @throws IOException
+	 */
+	public CommitLog(RepositorySession session, ObjectId start, ObjectId since) throws IOException {
+		this.head = start;
+		this.since = since;
+		this.reader = session.getReader();
+		this.revWalk = session.newRevWalk();
+		this.revWalk.sort(RevSort.COMMIT_TIME_DESC);
+		this.treeWalk = new TreeWalk(reader);
+		this.treeWalk.setRecursive(true);
+		this.treeWalk.setFilter(TreeFilter.ANY_DIFF);
+		this.renameDetector = new RenameDetector(reader,
+				session.getRepository().getConfig().get(DiffConfig.KEY));
+		this.renameDetector.setRenameScore(100);
+		if (start != null) {
+			revWalk.markStart(revWalk.parseCommit(start));
+			if (since != null)
+				revWalk.markUninteresting(revWalk.parseCommit(since));
+			advance();
+		} else
+			close();
+	}
+
+	private void advance() throws IOException {
+		next = revWalk.next();
+		if (next == null)
+			close();
+	}
+
+	/**
+	 * @return the commit the walk started from
+	 */
+	public ObjectId getHead() {
+		return head;
+	}
+
+	/**
+	 * @return the commit whose history is skipped, null for a full log
+	 */
+	public ObjectId getSince() {
+		return since;
+	}
+
+	@Override
+	public Iterator<Transaction> iterator() {
+		return new Iterator<Transaction>() {
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public Transaction next() {
+				if (next == null)
+					throw new NoSuchElementException();
+				try {
+					Transaction transaction = toTransaction(next);
+					advance();
+					return transaction;
+				} catch (IOException e) {
+					close();
+					throw new IllegalStateException(e);
+				}
+			}
+		};
+	}
+
+	private Transaction toTransaction(RevCommit commit) throws IOException {
+		PersonIdent author = commit.getAuthorIdent();
+		return new Transaction(commit.getName(), author.getWhen(), author.getName(), commit.getShortMessage(),
+				getFiles(commit));
+	}
+
+	/**
+	 * It gets the files affected by a commit, as listed by --name-status
+	 * @param commit
+	 * @return
+	 * @throws IOException
+	 */
+	private List<FileInfo> getFiles(RevCommit commit) throws IOException {
+		List<FileInfo> files = new ArrayList<FileInfo>();
+		if (commit.getParentCount() > 1)
+			return files;
+		treeWalk.reset();
+		if (commit.getParentCount() == 0)
+			treeWalk.addTree(new EmptyTreeIterator());
+		else
+			treeWalk.addTree(revWalk.parseCommit(commit.getParent(0)).getTree());
+		treeWalk.addTree(commit.getTree());
+		renameDetector.reset();
+		renameDetector.addAll(DiffEntry.scan(treeWalk));
+		for (DiffEntry entry : renameDetector.compute(reader, NullProgressMonitor.INSTANCE)) {
+			switch (entry.getChangeType()) {
+			case ADD:
+				files.add(new FileInfo(FileStatus.A, entry.getNewPath()));
+				break;
+			case DELETE:
+				files.add(new FileInfo(FileStatus.D, entry.getOldPath()));
+				break;
+			case RENAME:
+				files.add(new FileInfo(FileStatus.R, entry.getNewPath()));
+				break;
+			case COPY:
+				files.add(new FileInfo(FileStatus.C, entry.getNewPath()));
+				break;
+			default:
+				files.add(new FileInfo(FileStatus.M, entry.getNewPath()));
+				break;
+			}
+		}
+		return files;
+	}
+
+	@Override
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		next = null;
+		treeWalk.close();
+		revWalk.close();
+	}
+}
@@ -0,0 +1,408 @@
+package com.SZZ.jiraAnalyser.git;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Index of the commits modifying each path, built in one pass over history.
+ *
+ * Commits get an ordinal in the reverse order of a topological walk from
+ * HEAD, so parents always have a lower ordinal than their children. For each
+ * path the ordinals of the commits modifying it are kept in ascending order.
+ * A commit modifies a path when the path differs from its parent; merges
+ * modify a path only when it differs from all of their parents.
+ *
+ * getPrevious() follows the history of a path as the PathFilter walk of
+ * Git.walkPreviousCommit does: a merge that did not modify a path continues
+ * with its first parent having the same version of it. The index therefore
+ * also keeps the first parent of every commit, and for each path the merges
+ * taking it from another parent, with that parent. The previous commit is
+ * the nearest indexed commit on the first-parent chain of the parent, found
+ * with jump pointers, followed through those merges. Merges themselves are
+ * left to the walk, which picks between the histories of their parents by
+ * commit time.
+ *
+ * The commit time of every indexed commit is kept by ordinal as well, so it
+ * is read without accessing the object database.
+ *
+ * The index is saved next to the clone and extended with the new commits
+ * when HEAD moves. Lookups can be shared by several threads, updates must
+ * not run concurrently with them.
+ */
+public class FileHistory {
+
+	private static final int MAGIC = 0x535a5a48;
+	private static final int VERSION = 4;
+	private static final int ID = 20;
+
+	private ObjectId head;
+	private byte[] ids = new byte[ID * 1024];
+	private int[] times = new int[1024];
+	private int[] firstParent = new int[1024];
+	private int[] depth = new int[1024];
+	private int[] jump = new int[1024];
+	private final BitSet merges = new BitSet();
+	private int count = 0;
+	private int[] table = new int[2048];
+	private final Map<String, Ordinals> paths = new HashMap<String, Ordinals>();
+
+	/*
+	 * Growable ascending list of commit ordinals. For the merges taking the
+	 * path from a parent other than the first, through holds the ordinal of
+	 * that parent, -1 for the other commits; it is null while there is none.
+	 */
+	private static class Ordinals {
+		int[] values;
+		int[] through;
+		int size;
+
+		Ordinals(int capacity) {
+			values = new int[capacity];
+		}
+
+		void add(int ordinal, int parent) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+				if (through != null)
+					through = Arrays.copyOf(through, size * 2);
+			}
+			if (parent >= 0 && through == null) {
+				through = new int[values.length];
+				Arrays.fill(through, -1);
+			}
+			values[size] = ordinal;
+			if (through != null)
+				through[size] = parent;
+			size++;
+		}
+
+		int through(int index) {
+			return through == null ? -1 : through[index];
+		}
+	}
+
+	/**
+	 * @return the HEAD the index was last updated to, null if empty
+	 */
+	public ObjectId getHead() {
+		return head;
+	}
+
+	/**
+	 * @return the number of commits indexed
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * It indexes the commits reachable from newHead and not yet indexed
+	 * @param session
+	 * @param newHead
+	 * @throws IOException
+	 */
+	public void update(RepositorySession session, ObjectId newHead) throws IOException {
+		if (newHead.equals(head))
+			return;
+		ObjectReader reader = session.getReader();
+		List<RevCommit> commits = new ArrayList<RevCommit>();
+		try (RevWalk walk = session.newRevWalk()) {
+			walk.sort(RevSort.TOPO);
+			walk.sort(RevSort.COMMIT_TIME_DESC, true);
+			walk.markStart(walk.parseCommit(newHead));
+			if (head != null && reader.has(head))
+				walk.markUninteresting(walk.parseCommit(head));
+			for (RevCommit commit : walk)
+				commits.add(commit);
+			Collections.reverse(commits);
+			try (TreeWalk treeWalk = new TreeWalk(reader)) {
+				treeWalk.setRecursive(true);
+				for (RevCommit commit : commits) {
+					if (ordinal(commit) >= 0)
+						continue;
+					int ordinal = addCommit(commit);
+					addPaths(walk, treeWalk, commit, ordinal);
+				}
+			}
+		}
+		head = newHead.copy();
+	}
+
+	private void addPaths(RevWalk walk, TreeWalk treeWalk, RevCommit commit, int ordinal) throws IOException {
+		int parents = commit.getParentCount();
+		treeWalk.reset();
+		for (int i = 0; i < parents; i++)
+			treeWalk.addTree(walk.parseCommit(commit.getParent(i)).getTree());
+		treeWalk.addTree(commit.getTree());
+		treeWalk.setFilter(parents == 0 ? TreeFilter.ALL : TreeFilter.ANY_DIFF);
+		while (treeWalk.next()) {
+			// a merge continues with the first parent having the same version
+			int same = 0;
+			while (same < parents
+					&& !(treeWalk.idEqual(same, parents) && treeWalk.getRawMode(same) == treeWalk.getRawMode(parents)))
+				same++;
+			if (same == 0 && parents > 0)
+				continue;
+			String path = treeWalk.getPathString();
+			Ordinals ordinals = paths.get(path);
+			if (ordinals == null) {
+				ordinals = new Ordinals(4);
+				paths.put(path, ordinals);
+			}
+			ordinals.add(ordinal, same < parents ? ordinal(commit.getParent(same)) : -1);
+		}
+	}
+
+	private int addCommit(RevCommit commit) {
+		int parents = commit.getParentCount();
+		if (count == times.length)
+			grow(times.length * 2);
+		commit.copyRawTo(ids, ID * count);
+		times[count] = commit.getCommitTime();
+		if (parents > 1)
+			merges.set(count);
+		link(count, parents == 0 ? -1 : ordinal(commit.getParent(0)));
+		count++;
+		if (count * 2 > table.length)
+			rehash(table.length * 2);
+		else
+			insert(count - 1);
+		return count - 1;
+	}
+
+	private void grow(int capacity) {
+		ids = Arrays.copyOf(ids, ID * capacity);
+		times = Arrays.copyOf(times, capacity);
+		firstParent = Arrays.copyOf(firstParent, capacity);
+		depth = Arrays.copyOf(depth, capacity);
+		jump = Arrays.copyOf(jump, capacity);
+	}
+
+	/*
+	 * It sets the first parent of a commit and its jump pointer, which skips
+	 * ancestors so that any ancestor is reached in a logarithmic number of
+	 * steps
+	 */
+	private void link(int ordinal, int parent) {
+		firstParent[ordinal] = parent;
+		if (parent < 0) {
+			depth[ordinal] = 0;
+			jump[ordinal] = ordinal;
+			return;
+		}
+		depth[ordinal] = depth[parent] + 1;
+		int j = jump[parent];
+		jump[ordinal] = depth[parent] - depth[j] == depth[j] - depth[jump[j]] ? jump[j] : parent;
+	}
+
+	/*
+	 * It checks whether a commit is on the first-parent chain of another one,
+	 * itself included
+	 */
+	private boolean isFirstParentAncestor(int ancestor, int ordinal) {
+		int d = depth[ancestor];
+		while (depth[ordinal] > d)
+			ordinal = depth[jump[ordinal]] >= d ? jump[ordinal] : firstParent[ordinal];
+		return ordinal == ancestor;
+	}
+
+	/*
+	 * Open addressing table of ordinal + 1 by object id, 0 is a free slot
+	 */
+	private void insert(int ordinal) {
+		int mask = table.length - 1;
+		int slot = ObjectId.fromRaw(ids, ID * ordinal).hashCode() & mask;
+		while (table[slot] != 0)
+			slot = (slot + 1) & mask;
+		table[slot] = ordinal + 1;
+	}
+
+	private void rehash(int capacity) {
+		table = new int[capacity];
+		for (int i = 0; i < count; i++)
+			insert(i);
+	}
+
+	/**
+	 * @param commit
+	 * @return the ordinal of the commit, -1 if it is not indexed
+	 */
+	public int ordinal(AnyObjectId commit) {
+		byte[] raw = new byte[ID];
+		commit.copyRawTo(raw, 0);
+		int mask = table.length - 1;
+		int slot = commit.hashCode() & mask;
+		while (table[slot] != 0) {
+			int ordinal = table[slot] - 1;
+			if (ObjectId.equals(ids, ID * ordinal, raw, 0))
+				return ordinal;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param commit
+	 * @return true if the commit is indexed
+	 */
+	public boolean contains(AnyObjectId commit) {
+		return ordinal(commit) >= 0;
+	}
+
+	/**
+	 * @param commit
+	 * @return the commit time in seconds, -1 if the commit is not indexed
+	 */
+	public int getCommitTime(AnyObjectId commit) {
+		int ordinal = ordinal(commit);
+		return ordinal < 0 ? -1 : times[ordinal];
+	}
+
+	/**
+	 * @param commit
+	 * @return true if the commit is an indexed merge, whose previous commits
+	 *         are not given by getPrevious()
+	 */
+	public boolean isMerge(AnyObjectId commit) {
+		int ordinal = ordinal(commit);
+		return ordinal >= 0 && merges.get(ordinal);
+	}
+
+	/**
+	 * It gets the commit that modified a path before the given commit, in
+	 * the history of the path seen from it
+	 * @param commit an indexed commit modifying the path, not a merge
+	 * @param path
+	 * @return the previous commit, null if there is none or if commit did not
+	 *         modify the path
+	 */
+	public ObjectId getPrevious(AnyObjectId commit, String path) {
+		int ordinal = ordinal(commit);
+		Ordinals ordinals = paths.get(path);
+		if (ordinal < 0 || ordinals == null)
+			return null;
+		int index = Arrays.binarySearch(ordinals.values, 0, ordinals.size, ordinal);
+		if (index < 0 || ordinals.through(index) >= 0)
+			return null;
+		ordinal = firstParent[ordinal];
+		while (ordinal >= 0) {
+			index = Arrays.binarySearch(ordinals.values, 0, ordinals.size, ordinal);
+			if (index < 0)
+				index = -index - 2;
+			while (index >= 0 && !isFirstParentAncestor(ordinals.values[index], ordinal))
+				index--;
+			if (index < 0)
+				return null;
+			if (ordinals.through(index) < 0)
+				return ObjectId.fromRaw(ids, ID * ordinals.values[index]);
+			ordinal = ordinals.through(index);
+		}
+		return null;
+	}
+
+	/**
+	 * It writes the index to a file
+	 * @param file
+	 * @throws IOException
+	 */
+	public void save(File file) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			byte[] raw = new byte[ID];
+			head.copyRawTo(raw, 0);
+			out.write(raw);
+			out.writeInt(count);
+			out.write(ids, 0, ID * count);
+			for (int i = 0; i < count; i++)
+				out.writeInt(times[i]);
+			for (int i = 0; i < count; i++)
+				out.writeInt(firstParent[i]);
+			out.writeInt(merges.cardinality());
+			for (int i = merges.nextSetBit(0); i >= 0; i = merges.nextSetBit(i + 1))
+				out.writeInt(i);
+			out.writeInt(paths.size());
+			for (Map.Entry<String, Ordinals> entry : paths.entrySet()) {
+				out.writeUTF(entry.getKey());
+				Ordinals ordinals = entry.getValue();
+				out.writeInt(ordinals.size);
+				out.writeBoolean(ordinals.through != null);
+				for (int i = 0; i < ordinals.size; i++) {
+					out.writeInt(ordinals.values[i]);
+					if (ordinals.through != null)
+						out.writeInt(ordinals.through[i]);
+				}
+			}
+		}
+		if (file.exists())
+			file.delete();
+		if (!temp.renameTo(file))
+			throw new IOException("Cannot write " + file);
+	}
+
+	/**
+	 * It reads an index written by save()
+	 * @param file
+	 * @return
+	 * @throws IOException if the file is not a history index
+	 */
+	public static FileHistory load(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException("Not a history index: " + file);
+			FileHistory history = new FileHistory();
+			byte[] raw = new byte[ID];
+			in.readFully(raw);
+			history.head = ObjectId.fromRaw(raw);
+			history.count = in.readInt();
+			int capacity = 1024;
+			while (capacity < history.count)
+				capacity *= 2;
+			history.grow(capacity);
+			in.readFully(history.ids, 0, ID * history.count);
+			for (int i = 0; i < history.count; i++)
+				history.times[i] = in.readInt();
+			for (int i = 0; i < history.count; i++)
+				history.link(i, in.readInt());
+			for (int merges = in.readInt(); merges > 0; merges--)
+				history.merges.set(in.readInt());
+			history.rehash(capacity * 2);
+			int pathCount = in.readInt();
+			for (int p = 0; p < pathCount; p++) {
+				String path = in.readUTF();
+				int size = in.readInt();
+				boolean through = in.readBoolean();
+				Ordinals ordinals = new Ordinals(Math.max(size, 4));
+				for (int i = 0; i < size; i++) {
+					int ordinal = in.readInt();
+					ordinals.add(ordinal, through ? in.readInt() : -1);
+				}
+				history.paths.put(path, ordinals);
+			}
+			return history;
+		}
+	}
+}
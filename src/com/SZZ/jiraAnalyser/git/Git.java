@@ -2,6 +2,7 @@ package com.SZZ.jiraAnalyser.git;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
@@ -11,21 +12,28 @@ import java.net.URL;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
-import org.eclipse.jgit.api.BlameCommand;
+import org.eclipse.jgit.blame.BlameGenerator;
 import org.eclipse.jgit.blame.BlameResult;
+import org.eclipse.jgit.diff.DiffAlgorithm;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevSort;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
 import org.eclipse.jgit.treewalk.filter.PathFilter;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
@@ -36,8 +44,9 @@ import com.SZZ.jiraAnalyser.entities.Transaction.FileInfo;
 
 
 
-public class Git {
+public class Git implements Closeable {
 
+	public final String remoteUrl;
 	public final String cloneCommand;
 	public final File storagePath;
 	public final String pullCommand;
@@ -45,12 +54,30 @@ public class Git {
 	public final String logCommand;
 	public final File logFile;
 	public final File csvFile;
-	private BlameResult blame;
+	private final BlameCache blameCache = new BlameCache();
+	private final Map<List<Object>, FutureTask<CommitDiff>> diffCache =
+			new LinkedHashMap<List<Object>, FutureTask<CommitDiff>>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<List<Object>, FutureTask<CommitDiff>> eldest) {
+					return size() > DIFF_CACHE_SIZE;
+				}
+			};
+	private DiffAlgorithm diffAlgorithm = DiffAlgorithm.getAlgorithm(DiffAlgorithm.SupportedAlgorithm.HISTOGRAM);
+	private RepositorySession session;
+	private FileHistory fileHistory;
+	private boolean historyCurrent = false;
+	public final File historyFile;
+	private Metrics metrics = new Metrics();
 
 	private static final char DELIMITER = ';';
+	private static final int DIFF_CACHE_SIZE = 64;
 
 	public Git(Path storagePath, URL url) {
-		this.cloneCommand = "git clone " + url.toString();
+		// URL.toString() turns file:///path into file:/path, which git does not read
+		this.remoteUrl = "file".equals(url.getProtocol()) ? url.getPath() : url.toString();
+		this.cloneCommand = "git clone " + remoteUrl;
 		this.storagePath = storagePath.toFile();
 		this.pullCommand = "git pull";
 		this.workingDirectory = gitWorkingDirectory(storagePath, url);
@@ -64,6 +91,7 @@ public class Git {
 				"--name-status -M100%";
 		this.logFile = this.gitLogFile(storagePath, url);
 		this.csvFile = this.csvFile(storagePath, url);
+		this.historyFile = Paths.get(storagePath.toString(), this.gitDirectory(url) + "_history.idx").toFile();
 		workingDirectory.delete();
 	}
 
@@ -86,12 +114,128 @@ public class Git {
 				.toFile();
 	}
 
+	/**
+	 * It returns the repository session shared by all Git queries, opening it
+	 * on first use. The session stays open until close() is called.
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	public synchronized RepositorySession getSession() throws IOException {
+		if (session == null || session.isClosed())
+			session = new RepositorySession(workingDirectory);
+		return session;
+	}
+
+	/**
+	 * It closes the repository session, if any
+	 */
+	@Override
+	public synchronized void close() {
+		if (session != null) {
+			session.close();
+			session = null;
+		}
+	}
+
+	/**
+	 * It releases the repository reader of the calling thread, e.g. at the end
+	 * of a stage, while the session stays open for the other threads
+	 */
+	public synchronized void releaseThread() {
+		if (session != null)
+			session.releaseThread();
+	}
+
+	/**
+	 * It returns the cache of blame results, e.g. to read hit/miss counters
+	 * @return
+	 */
+	public BlameCache getBlameCache() {
+		return blameCache;
+	}
+
+	/**
+	 * It sets where the durations of diffs, blames and previous commit
+	 * lookups and the lookups of the diff cache are recorded
+	 * @param metrics
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+	}
+
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * It sets the memory budget of the blame cache
+	 * @param bytes
+	 */
+	public void setBlameCacheBudget(long bytes) {
+		blameCache.setBudget(bytes);
+	}
+
+	/**
+	 * It clones the repository with the git binary, or with JGit on hosts
+	 * where git is not installed
+	 * @throws Exception
+	 */
 	public void cloneRepository() throws Exception {
-		execute(this.cloneCommand, this.storagePath);
+		try {
+			execute(this.cloneCommand, this.storagePath);
+		} catch (IOException e) {
+			if (workingDirectory.exists())
+				return;
+			System.out.println("git not available, cloning " + remoteUrl + " with JGit");
+			org.eclipse.jgit.api.Git.cloneRepository()
+					.setURI(remoteUrl)
+					.setDirectory(workingDirectory)
+					.call()
+					.close();
+		}
 	}
 
 	public void pullUpdates() throws Exception {
-		execute(this.pullCommand, this.workingDirectory);
+		try {
+			execute(this.pullCommand, this.workingDirectory);
+		} catch (IOException e) {
+			System.out.println("git not available, pulling with JGit");
+			getSession().getGit().pull().call();
+		}
+	}
+
+	/**
+	 * It walks the history from HEAD in-process, producing the same
+	 * transactions as saveLog() followed by getCommits() without running git
+	 * or writing the log file. The returned log must be consumed by the
+	 * calling thread.
+	 * @return
+	 * @throws IOException
+	 */
+	public CommitLog walkCommits() throws IOException {
+		return walkCommits(null);
+	}
+
+	/**
+	 * It walks only the commits added after sinceSha. If sinceSha is null or
+	 * no longer part of the repository (e.g. after a force push) the whole
+	 * history is walked; CommitLog.getSince() tells which one happened.
+	 * @param sinceSha
+	 * @return
+	 * @throws IOException
+	 */
+	public CommitLog walkCommits(String sinceSha) throws IOException {
+		RepositorySession session = getSession();
+		ObjectId since = null;
+		if (sinceSha != null) {
+			ObjectId id = ObjectId.fromString(sinceSha);
+			if (session.getRepository().hasObject(id))
+				since = id;
+			else
+				System.out.println("Commit " + sinceSha + " not found, walking the whole history");
+		}
+		return new CommitLog(session, session.resolve("HEAD"), since);
 	}
 
 	public void saveLog() throws Exception {
@@ -119,7 +263,28 @@ public class Git {
 		Process p = pb.start();
         p.waitFor();
 	}
+	/**
+	 * It parses the log file written by saveLog()
+	 * @return
+	 */
 	public List<Transaction> getCommits() {
+		try {
+			return new GitLogParser().parse(logFile);
+		}
+		catch(Exception e){
+			e.printStackTrace();
+			return new ArrayList<Transaction>();
+		}
+	}
+
+	/**
+	 * Former BufferedReader based parser of the log file, kept as reference
+	 * for comparing GitLogParser against
+	 * @return
+	 * @deprecated use getCommits()
+	 */
+	@Deprecated
+	public List<Transaction> getCommitsBuffered() {
 		List<Transaction> transactions = new ArrayList<Transaction>();
 		
 		 String line="";
@@ -181,24 +346,15 @@ public class Git {
 	   */
 	  public  String getDiff (String shaCommit, String fileName, PrintWriter l)  {
 		String result = "";
-		File  localRepo1 = new File(workingDirectory+"");
 		try {
-		org.eclipse.jgit.api.Git git = org.eclipse.jgit.api.Git.open(localRepo1);
-	    ObjectId  oldId = git.getRepository().resolve(shaCommit+"^^{tree}");
-	    ObjectId headId = git.getRepository().resolve(shaCommit + "^{tree}");
-	    ObjectReader reader = git.getRepository().newObjectReader();
-	    CanonicalTreeParser oldTreeIter = new CanonicalTreeParser();
-	    oldTreeIter.reset(reader, oldId);
-	    CanonicalTreeParser newTreeIter = new CanonicalTreeParser();
-			newTreeIter.reset(reader, headId);
-		    List<DiffEntry> diffs= git.diff()
-		            .setNewTree(newTreeIter)
-		            .setOldTree(oldTreeIter)
-		            .call();
+		RepositorySession session = getSession();
+	    ObjectId  oldId = session.resolve(shaCommit+"^^{tree}");
+	    ObjectId headId = session.resolve(shaCommit + "^{tree}");
 		    ByteArrayOutputStream out = new ByteArrayOutputStream();
-		    DiffFormatter df = new DiffFormatter(out);
+		    try (DiffFormatter df = new DiffFormatter(out)) {
 		   // df.setDiffComparator(RawTextComparator.WS_IGNORE_LEADING);
-		    df.setRepository(git.getRepository());
+		    df.setReader(session.getReader(), session.getRepository().getConfig());
+		    List<DiffEntry> diffs = df.scan(oldId, headId);
 
 		    for(DiffEntry diff : diffs)
 		    {
@@ -206,14 +362,14 @@ public class Git {
 		    	// Print the contents of the DiffEntries
 		    	  //System.out.println(diff.getNewPath());
 		    	  df.format(diff);
-		          diff.getOldId();
+		          df.flush();
 		          String diffText = out.toString("UTF-8");
 		          result = diffText;
 		          out.reset();
-		          df.close();
 		          break;
 		      }
 		    }
+		    }
 		} catch (Exception e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -223,6 +379,92 @@ public class Git {
 	    return result;
 		}
 
+	  /**
+	   * It gets the lines of fileName removed by a commit, comparing the file
+	   * in the first parent and in the commit with the selected diff algorithm.
+	   * Lines are 0-based indexes in the parent version of the file, returned as
+	   * ranges: [begin0, end0, begin1, end1, ...] with each end exclusive.
+	   * Added, deleted, binary and unchanged files have no removed lines.
+	   * The diff is not kept in the cache of getCommitDiff, whose entries
+	   * cover all the files of a fixing commit.
+	   * @param shaCommit
+	   * @param fileName path of the file in the commit
+	   * @return the ranges, null if the commit or file cannot be read
+	   */
+	  public int[] getDeletedLines(String shaCommit, String fileName, PrintWriter l) {
+		  long start = System.nanoTime();
+		  try {
+			  RepositorySession session = getSession();
+			  RevCommit commit = session.parseCommit(ObjectId.fromString(shaCommit));
+			  return CommitDiff.compute(session, commit, Collections.singletonList(fileName), diffAlgorithm)
+					  .getDeletedLines(fileName);
+		  } catch (Exception e) {
+			  e.printStackTrace();
+			  if (l != null)
+				  l.println(e);
+			  return null;
+		  } finally {
+			  metrics.record("diff", System.nanoTime() - start);
+		  }
+	  }
+
+	  /**
+	   * It diffs a commit against its first parent once for all the given
+	   * files. The last DIFF_CACHE_SIZE results are kept, so that the links
+	   * sharing a fixing commit, usually consecutive, reuse the same diff;
+	   * a diff being computed by another thread is waited for.
+	   * @param shaCommit
+	   * @param paths repository paths of the files
+	   * @param l
+	   * @return the diff, or null if it failed
+	   */
+	  public CommitDiff getCommitDiff(String shaCommit, List<String> paths, PrintWriter l) {
+		  List<Object> key = Arrays.<Object>asList(shaCommit, paths);
+		  FutureTask<CommitDiff> task;
+		  boolean owner = false;
+		  synchronized (diffCache) {
+			  task = diffCache.get(key);
+			  if (task == null) {
+				  task = new FutureTask<CommitDiff>(() -> {
+					  RepositorySession session = getSession();
+					  RevCommit commit = session.parseCommit(ObjectId.fromString(shaCommit));
+					  return CommitDiff.compute(session, commit, paths, diffAlgorithm);
+				  });
+				  diffCache.put(key, task);
+				  owner = true;
+			  }
+		  }
+		  metrics.cacheLookup("diff", !owner);
+		  if (owner) {
+			  long start = System.nanoTime();
+			  task.run();
+			  metrics.record("diff", System.nanoTime() - start);
+		  }
+		  try {
+			  return task.get();
+		  } catch (Exception e) {
+			  synchronized (diffCache) {
+				  diffCache.remove(key, task);
+			  }
+			  Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+			  cause.printStackTrace();
+			  if (l != null)
+				  l.println(cause);
+			  return null;
+		  }
+	  }
+
+	  /**
+	   * It selects the diff algorithm used by getCommitDiff (Histogram by default)
+	   * @param algorithm
+	   */
+	  public void setDiffAlgorithm(DiffAlgorithm.SupportedAlgorithm algorithm) {
+		  this.diffAlgorithm = DiffAlgorithm.getAlgorithm(algorithm);
+		  synchronized (diffCache) {
+			  diffCache.clear();
+		  }
+	  }
+
 	  /**
 	   * It gets removed lines from a commit starting from the diffString
 	   * @param diffString
@@ -285,22 +527,101 @@ public class Git {
 	   */
 		//removed unused parameter PrintWriter l
 	  public  String getBlameAt(String commitSha, String file, int lineNumber) {
-		  File  localRepo1 = new File(workingDirectory+"");
-		try {
-			if (blame==null){
-			  org.eclipse.jgit.api.Git git = org.eclipse.jgit.api.Git.open(localRepo1);
-			  Repository repository = git.getRepository();
-		      BlameCommand blamer = new BlameCommand(repository);
-		      ObjectId commitID;
-			  commitID = repository.resolve(commitSha);
-		      blamer.setStartCommit(commitID);
-		      blamer.setFilePath(file);
-		      blame = blamer.call();}
-		      RevCommit commit = blame.getSourceCommit(lineNumber);
-		      return commit.getName();
-		} catch (Exception e) {
-			return null;
-		}
+		  String[] blame = getBlame(commitSha, file, new int[] { lineNumber, lineNumber + 1 });
+		  return blame == null ? null : blame[0];
+	  }
+
+	  /**
+	   * It gets the source commit of some lines of a file at a specific commit.
+	   * Only the requested lines are blamed: history is walked until all of
+	   * them are attributed. Blamed lines are cached, so a later request only
+	   * computes the lines not blamed yet.
+	   * @param commitSha
+	   * @param file
+	   * @param ranges 0-based line ranges [begin0, end0, begin1, end1, ...], ends exclusive
+	   * @return the source commit of each requested line in order, null for
+	   *         lines out of the file, or null if the file cannot be blamed
+	   */
+	  public String[] getBlame(String commitSha, String file, int[] ranges) {
+		  try {
+			  ObjectId[] lines = blameCache.get(commitSha, file);
+			  if (lines == null || !isBlamed(lines, ranges)) {
+				  long start = System.nanoTime();
+				  lines = blame(commitSha, file, ranges, lines);
+				  metrics.record("blame", System.nanoTime() - start);
+				  if (lines == null)
+					  return null;
+				  blameCache.put(commitSha, file, lines);
+			  }
+			  int n = 0;
+			  for (int r = 0; r < ranges.length; r += 2)
+				  n += ranges[r + 1] - ranges[r];
+			  String[] shas = new String[n];
+			  n = 0;
+			  for (int r = 0; r < ranges.length; r += 2)
+				  for (int i = ranges[r]; i < ranges[r + 1]; i++)
+					  shas[n++] = i < lines.length && lines[i] != null ? lines[i].getName() : null;
+			  return shas;
+		  } catch (Exception e) {
+			  return null;
+		  }
+	  }
+
+	  private boolean isBlamed(ObjectId[] lines, int[] ranges) {
+		  for (int r = 0; r < ranges.length; r += 2)
+			  for (int i = ranges[r]; i < ranges[r + 1] && i < lines.length; i++)
+				  if (lines[i] == null)
+					  return false;
+		  return true;
+	  }
+
+	  /*
+	   * It blames the requested ranges, completing a copy of the lines already blamed
+	   */
+	  private ObjectId[] blame(String commitSha, String file, int[] ranges, ObjectId[] blamed) throws IOException {
+		  Repository repository = getSession().getRepository();
+		  ObjectId commitId = repository.resolve(commitSha);
+		  if (commitId == null)
+			  return null;
+		  try (BlameGenerator generator = new BlameGenerator(repository, file)) {
+			  generator.push(null, commitId);
+			  BlameResult result = BlameResult.create(generator);
+			  if (result == null)
+				  return null;
+			  int size = result.getResultContents().size();
+			  ObjectId[] lines = blamed != null && blamed.length == size ? blamed.clone() : new ObjectId[size];
+			  for (int r = 0; r < ranges.length; r += 2) {
+				  int begin = Math.min(ranges[r], size);
+				  int end = Math.min(ranges[r + 1], size);
+				  if (begin >= end)
+					  continue;
+				  result.computeRange(begin, end);
+				  for (int i = begin; i < end; i++) {
+					  RevCommit commit = result.getSourceCommit(i);
+					  lines[i] = commit == null ? null : commit.copy();
+				  }
+			  }
+			  return lines;
+		  }
+	  }
+
+
+	  /**
+	   * It gets the commit time of a commit, from the file history index when
+	   * the commit is indexed, otherwise by parsing the commit
+	   * @param sha
+	   * @param l
+	   * @return the commit time in seconds, -1 if the commit cannot be read
+	   */
+	  public long getCommitTime(String sha, PrintWriter l) {
+		  FileHistory history = getFileHistory();
+		  if (history != null) {
+			  int time = history.getCommitTime(ObjectId.fromString(sha));
+			  if (time >= 0)
+				  return time;
+		  }
+		  RevCommit commit = getCommit(sha, l);
+		  return commit == null ? -1 : commit.getCommitTime();
 	  }
 
 	  /**
@@ -308,15 +629,10 @@ public class Git {
 	   *
 	   */
 	  public RevCommit getCommit(String sha, PrintWriter l){
-		  File  localRepo1 = new File(workingDirectory+"");
-		  //Repository repository = git.getRepository();
 		  RevCommit commit = null;
 		  try{
-			  org.eclipse.jgit.api.Git git = org.eclipse.jgit.api.Git.open(localRepo1);
-			  Repository repository = git.getRepository();
-			  RevWalk walk = new RevWalk( repository);
 			  ObjectId commitId = ObjectId.fromString( sha);
-			   commit = walk.parseCommit( commitId );
+			   commit = getSession().parseCommit( commitId );
 			  //System.out.println(commit.getCommitTime());
 			} catch (Exception e) {
 				e.printStackTrace();
@@ -327,23 +643,97 @@ public class Git {
 	  }
 
 	  /**
-	   * Get Commit that changed the file before the parameter commit
+	   * It makes the next getFileHistory() bring the index up to date with
+	   * HEAD, e.g. after a pull on a Git kept between analyses
+	   */
+	  public synchronized void refresh() {
+		  historyCurrent = false;
+	  }
+
+	  /**
+	   * It returns the file history index of HEAD, loading it from its file
+	   * next to the clone and indexing the commits added since it was saved.
+	   * It is brought up to date once, on first use after refresh().
+	   * @return the index, or null if it cannot be built
+	   */
+	  public synchronized FileHistory getFileHistory() {
+		  if (fileHistory != null && historyCurrent)
+			  return fileHistory;
+		  try {
+			  RepositorySession session = getSession();
+			  ObjectId head = session.resolve(Constants.HEAD);
+			  if (head == null)
+				  return null;
+			  FileHistory history = fileHistory;
+			  if (history == null && historyFile.exists()) {
+				  try {
+					  history = FileHistory.load(historyFile);
+				  } catch (IOException e) {
+					  System.out.println("Cannot read " + historyFile + ", indexing history again: " + e.getMessage());
+				  }
+			  }
+			  if (history == null)
+				  history = new FileHistory();
+			  if (!head.equals(history.getHead())) {
+				  long start = System.nanoTime();
+				  history.update(session, head);
+				  history.save(historyFile);
+				  metrics.record("historyIndex", System.nanoTime() - start);
+			  }
+			  fileHistory = history;
+			  historyCurrent = true;
+			  return fileHistory;
+		  } catch (Exception e) {
+			  e.printStackTrace();
+			  return null;
+		  }
+	  }
+
+	  /**
+	   * Get Commit that changed the file before the parameter commit, from the
+	   * file history index when the commit is indexed and is not a merge,
+	   * otherwise walking the history of the file
 	   * @param sha
 	   * @param file
 	   * @return
 	   */
 	  public String getPreviousCommit (String sha, String file, PrintWriter l){
-		  if (sha.equals("a8da84c614ba6e6e87c6c91e0c426ddfec2766a2"))
-			  System.out.println();
-		  File  localRepo1 = new File(workingDirectory+"");
-		  Iterable<RevCommit> iterable;
+		  long start = System.nanoTime();
+		  try {
+			  return findPreviousCommit(sha, file, l);
+		  } finally {
+			  metrics.record("previousCommit", System.nanoTime() - start);
+		  }
+	  }
+
+	  private String findPreviousCommit (String sha, String file, PrintWriter l){
+		  FileHistory history = getFileHistory();
+		  ObjectId commit = ObjectId.fromString(sha);
+		  if (history != null && history.contains(commit) && !history.isMerge(commit)) {
+			  ObjectId previous = history.getPrevious(commit, file);
+			  if (previous == null) {
+				  if (l != null)
+					  l.println("No Predecessor-Commits found for "+sha +"for file " + file);
+				  return null;
+			  }
+			  return previous.getName();
+		  }
+		  return walkPreviousCommit(sha, file, l);
+	  }
+
+	  /**
+	   * Get Commit that changed the file before the parameter commit, walking
+	   * the history of the file
+	   * @param sha
+	   * @param file
+	   * @return
+	   */
+	  public String walkPreviousCommit (String sha, String file, PrintWriter l){
 		  String finalSha = "";
 		  RevCommit latestCommit = null;
 		  String path = file;
-		  try {
-			org.eclipse.jgit.api.Git git = org.eclipse.jgit.api.Git.open(localRepo1);
-			RevWalk revWalk = new RevWalk( git.getRepository() );
-		    RevCommit revCommit = getCommit(sha, null);
+		  try (RevWalk revWalk = getSession().newRevWalk()) {
+		    RevCommit revCommit = revWalk.parseCommit(ObjectId.fromString(sha));
 		    revWalk.markStart( revCommit );
 		    revWalk.sort( RevSort.COMMIT_TIME_DESC );
 		    revWalk.setTreeFilter( AndTreeFilter.create( PathFilter.create( path ), TreeFilter.ANY_DIFF ) );
@@ -356,7 +746,8 @@ public class Git {
 		    finalSha =  latestCommit.getName();
 
 		  } catch (Exception e) {
-			 l.println("No Predecessor-Commits found for "+sha +"for file " + file);
+			 if (l != null)
+				 l.println("No Predecessor-Commits found for "+sha +"for file " + file);
 			return null;
 		}
 		  return finalSha;
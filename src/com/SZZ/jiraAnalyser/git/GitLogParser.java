@@ -0,0 +1,224 @@
+package com.SZZ.jiraAnalyser.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.SZZ.jiraAnalyser.entities.Transaction;
+import com.SZZ.jiraAnalyser.entities.Transaction.FileInfo;
+
+/**
+ * Single pass parser of the log written by Git.saveLog().
+ *
+ * The log file is memory-mapped window by window and scanned byte by byte.
+ * Each line is copied once into a reusable buffer; only the fields kept by
+ * the Transaction are turned into Strings, and ISO timestamps are decoded
+ * arithmetically instead of through a SimpleDateFormat.
+ *
+ * Fields are split as the BufferedReader based parser did: quotes are
+ * dropped from the header, the comment is the fourth ';' separated field and
+ * a name-status line is split at tabs into status and first path.
+ */
+public class GitLogParser {
+
+	/*
+	 * Size of the mapped window, lines crossing a window are carried over
+	 */
+	private static final long WINDOW = 64L * 1024 * 1024;
+
+	private static final byte QUOTE = '\'';
+	private static final byte DELIMITER = ';';
+	private static final byte TAB = '\t';
+
+	private byte[] line = new byte[1024];
+	private int length = 0;
+	private int[] fields = new int[8];
+
+	private final List<Transaction> transactions = new ArrayList<Transaction>();
+	private String hashId;
+	private Date timestamp;
+	private String author;
+	private String comment;
+	private List<FileInfo> filesAffected;
+
+	/**
+	 * It parses the whole log file
+	 *
+	 * @param logFile
+	 * @return the transactions in log order
+	 * @throws IOException
+	 */
+	public List<Transaction> parse(File logFile) throws IOException {
+		transactions.clear();
+		try (RandomAccessFile file = new RandomAccessFile(logFile, "r");
+				FileChannel channel = file.getChannel()) {
+			long size = channel.size();
+			for (long position = 0; position < size; position += WINDOW) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+						Math.min(WINDOW, size - position));
+				while (buffer.hasRemaining()) {
+					byte b = buffer.get();
+					if (b == '\n')
+						endOfLine();
+					else
+						append(b);
+				}
+			}
+		}
+		if (length > 0)
+			endOfLine();
+		flush();
+		return new ArrayList<Transaction>(transactions);
+	}
+
+	private void append(byte b) {
+		if (length == line.length) {
+			byte[] larger = new byte[line.length * 2];
+			System.arraycopy(line, 0, larger, 0, length);
+			line = larger;
+		}
+		line[length++] = b;
+	}
+
+	private void endOfLine() {
+		if (length > 0 && line[length - 1] == '\r')
+			length--;
+		if (length == 0)
+			flush();
+		else if (line[0] == QUOTE)
+			header();
+		else if (hashId != null)
+			file();
+		length = 0;
+	}
+
+	/*
+	 * 'hash;date;author;subject;'
+	 */
+	private void header() {
+		flush();
+		int n = 0;
+		for (int i = 0; i < length; i++) {
+			if (line[i] != QUOTE)
+				line[n++] = line[i];
+		}
+		int count = split(n, DELIMITER);
+		if (count < 3)
+			return;
+		hashId = field(0);
+		timestamp = parseIsoDate(line, fields[2], fields[3]);
+		author = field(2);
+		comment = count > 3 ? field(3) : "";
+		filesAffected = new ArrayList<FileInfo>();
+	}
+
+	/*
+	 * status<TAB>path[<TAB>path]
+	 */
+	private void file() {
+		int count = split(length, TAB);
+		if (count < 2)
+			return;
+		filesAffected.add(new FileInfo(field(0), field(1)));
+	}
+
+	/**
+	 * It records the field boundaries: field i goes from fields[2i] to
+	 * fields[2i + 1]. Trailing empty fields are dropped, as String.split does.
+	 */
+	private int split(int end, byte separator) {
+		int count = 0;
+		int start = 0;
+		for (int i = 0; i <= end; i++) {
+			if (i == end || line[i] == separator) {
+				if (count * 2 + 1 >= fields.length) {
+					int[] larger = new int[fields.length * 2];
+					System.arraycopy(fields, 0, larger, 0, fields.length);
+					fields = larger;
+				}
+				fields[count * 2] = start;
+				fields[count * 2 + 1] = i;
+				count++;
+				start = i + 1;
+			}
+		}
+		while (count > 0 && fields[count * 2 - 1] == fields[count * 2 - 2])
+			count--;
+		return count;
+	}
+
+	private String field(int i) {
+		return new String(line, fields[i * 2], fields[i * 2 + 1] - fields[i * 2], StandardCharsets.UTF_8);
+	}
+
+	private void flush() {
+		if (hashId != null)
+			transactions.add(new Transaction(hashId, timestamp, author, comment, filesAffected));
+		hashId = null;
+		filesAffected = null;
+	}
+
+	/**
+	 * It decodes a strict ISO 8601 timestamp (yyyy-MM-ddTHH:mm:ss followed by
+	 * Z or +HH:MM / -HH:MM) as written by %aI
+	 *
+	 * @param b
+	 * @param from
+	 * @param to exclusive
+	 * @return null if the timestamp is malformed
+	 */
+	static Date parseIsoDate(byte[] b, int from, int to) {
+		if (to - from < 19)
+			return null;
+		int year = digits(b, from, 4);
+		int month = digits(b, from + 5, 2);
+		int day = digits(b, from + 8, 2);
+		int hour = digits(b, from + 11, 2);
+		int minute = digits(b, from + 14, 2);
+		int second = digits(b, from + 17, 2);
+		if (year < 0 || month < 1 || day < 1 || hour < 0 || minute < 0 || second < 0)
+			return null;
+		int offset = 0;
+		int z = from + 19;
+		if (z < to && (b[z] == '+' || b[z] == '-') && to - z >= 6) {
+			int offsetHours = digits(b, z + 1, 2);
+			int offsetMinutes = digits(b, z + 4, 2);
+			if (offsetHours < 0 || offsetMinutes < 0)
+				return null;
+			offset = (offsetHours * 60 + offsetMinutes) * 60;
+			if (b[z] == '-')
+				offset = -offset;
+		}
+		long seconds = daysFromCivil(year, month, day) * 86400L + hour * 3600 + minute * 60 + second - offset;
+		return new Date(seconds * 1000);
+	}
+
+	private static int digits(byte[] b, int from, int count) {
+		int value = 0;
+		for (int i = from; i < from + count; i++) {
+			int d = b[i] - '0';
+			if (d < 0 || d > 9)
+				return -1;
+			value = value * 10 + d;
+		}
+		return value;
+	}
+
+	/*
+	 * Days since 1970-01-01 of a proleptic Gregorian date
+	 */
+	private static long daysFromCivil(int year, int month, int day) {
+		year -= month <= 2 ? 1 : 0;
+		long era = (year >= 0 ? year : year - 399) / 400;
+		long yearOfEra = year - era * 400;
+		long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+}
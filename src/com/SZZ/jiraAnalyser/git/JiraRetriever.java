@@ -1,38 +1,61 @@
 package com.SZZ.jiraAnalyser.git;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.net.URLEncoder;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
-import org.w3c.dom.Document;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
-public class JiraRetriever {
+import com.SZZ.jiraAnalyser.entities.IssueStore;
+import com.SZZ.jiraAnalyser.entities.Metrics;
+import com.SZZ.jiraAnalyser.entities.MiningState;
+
+public class JiraRetriever implements Closeable {
+	private static final int PAGE_SIZE = 1000;
+	private static final long MAX_BACKOFF = 60000;
+	private static final int CONNECT_TIMEOUT = 60000;
+	private static final int READ_TIMEOUT = 300000;
+	/*
+	 * Updated-since queries start one day earlier, JQL dates being in the
+	 * time zone of the Jira server
+	 */
+	private static final long SYNC_MARGIN = 24L * 60 * 60 * 1000;
+
 	private String jiraURL;
 	private String projectName;
-	private URL url;
-	private URLConnection connection;
-	private Document d;
+	private File directory;
 	private PrintWriter pw;
+	private boolean binaryStore = false;
+	private int concurrency = 1;
+	private long initialBackoff = 1000;
+	private int maxAttempts = 8;
+	private Metrics metrics = new Metrics();
 
 	/**
 	 * Class for retrieving all Jira issues. The retrieval must be done only if
@@ -42,52 +65,86 @@ public class JiraRetriever {
 	 * @param projectName
 	 */
 	public JiraRetriever(String jiraURL, String projectName) {
+		this(jiraURL, projectName, null);
+	}
+
+	/**
+	 * Same as above, the files of the project being kept in a directory
+	 * instead of the working directory
+	 * 
+	 * @param jiraURL
+	 * @param projectName
+	 * @param directory null for the working directory
+	 */
+	public JiraRetriever(String jiraURL, String projectName, File directory) {
 		this.jiraURL = jiraURL;
 		this.projectName = projectName;
+		this.directory = directory;
+		if (directory != null)
+			directory.mkdirs();
 		try {
-			pw = new PrintWriter(new FileOutputStream(new File(projectName + "-log.txt"),
-					true /* append = true */));
+			pw = new PrintWriter(new FileOutputStream(new File(directory, projectName + "-log.txt"),
+					true /* append = true */), true);
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 		}
 	}
 
 	/**
-	 * It gets a the XML Document from the stream
-	 * 
-	 * @param stream
-	 * @return
+	 * When enabled, issues are also saved in the binary file read by
+	 * IssueStore once all pages are downloaded
+	 * @param binaryStore
 	 */
-	private Document parseXML(InputStream stream) {
-		DocumentBuilderFactory objDocumentBuilderFactory = null;
-		DocumentBuilder objDocumentBuilder = null;
-		Document doc = null;
-		try {
-			objDocumentBuilderFactory = DocumentBuilderFactory.newInstance();
-			objDocumentBuilder = objDocumentBuilderFactory.newDocumentBuilder();
-			doc = objDocumentBuilder.parse(stream);
-		} catch (Exception ex) {
-			// TODO Auto-generated catch block
-			ex.printStackTrace();
-		}
-		return doc;
+	public void setBinaryStore(boolean binaryStore) {
+		this.binaryStore = binaryStore;
+	}
+
+	/**
+	 * It sets the number of pages downloaded at the same time
+	 * @param concurrency
+	 */
+	public void setConcurrency(int concurrency) {
+		this.concurrency = Math.max(1, concurrency);
+	}
+
+	/**
+	 * It sets how failed page downloads are retried: the first retry waits
+	 * initialBackoff milliseconds, each next one twice as long (at most one
+	 * minute)
+	 * @param initialBackoff
+	 * @param maxAttempts attempts per page before giving up
+	 */
+	public void setRetries(long initialBackoff, int maxAttempts) {
+		this.initialBackoff = initialBackoff;
+		this.maxAttempts = Math.max(1, maxAttempts);
+	}
+
+	/**
+	 * It sets where the download and the page requests are measured
+	 * @param metrics
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * It closes the log of the retriever
+	 */
+	@Override
+	public void close() {
+		if (pw != null)
+			pw.close();
 	}
 
 	private int getTotalNumberIssues() {
 		String tempQuery = "?jqlQuery=project+%3D+{0}+ORDER+BY+key+DESC&tempMax=1";
 		tempQuery = tempQuery.replace("{0}", projectName);
-		try {
-			url = new URL(jiraURL + tempQuery);
-			connection = url.openConnection();
-			d = parseXML(connection.getInputStream());
-			NodeList descNodes = d.getElementsByTagName("item");
-			Node node = descNodes.item(0);
-			for (int p = 0; p < node.getChildNodes().getLength(); p++) {
-				if (node.getChildNodes().item(p).getNodeName().equals("key")) {
-					String key = (node.getChildNodes().item(p).getTextContent());
-					key = key.replaceFirst(".*?(\\d+).*", "$1");
-					return Integer.parseInt(key);
-				}
+		try (InputStream stream = open(new URL(jiraURL + tempQuery))) {
+			final List<String> keys = new ArrayList<String>();
+			new JiraXmlReader().read(stream, item -> keys.add(item.issueKey));
+			if (!keys.isEmpty()) {
+				String key = keys.get(0).replaceFirst(".*?(\\d+).*", "$1");
+				return Integer.parseInt(key);
 			}
 		} catch (Exception e) {
 			pw.println(e.getMessage());
@@ -96,168 +153,371 @@ public class JiraRetriever {
 	}
 
 	public void printIssues() {
+		long syncTime = System.currentTimeMillis();
+		int totalIssues = getTotalNumberIssues();
+		int totalePages = (int) Math.ceil(((double) totalIssues / PAGE_SIZE));
+		File file = pageFile(0);
+		System.out.println("Jira issues saved in "+file);
+		MiningState state = new MiningState(directory, projectName);
+		PageJournal journal = new PageJournal(directory, projectName, PAGE_SIZE);
+		if (totalIssues > 0 && state.getLastIssue() >= totalIssues && file.exists() && journal.isDownloaded()) {
+			System.out.println("No new Jira issues since issue " + state.getLastIssue());
+			if (binaryStore && !IssueStore.binaryFile(directory, projectName).exists())
+				saveLastIssue(state, totalIssues, 0);
+			return;
+		}
+
+		boolean complete = true;
 		int page = 0;
-		int totalePages = (int) Math.ceil(((double) getTotalNumberIssues() / 1000));
-		String fileName = projectName + "_" + page + ".csv";
-		File file = new File( fileName);
-		System.out.println("Jira issues saved in "+fileName);
-		while (file.exists()) {
+		if (totalePages > 0) {
+			complete = downloadPages(journal, totalePages);
+			page = totalePages;
+		}
+		// Pages past the expected total (or all of them when the total is
+		// unknown) are fetched one by one until an empty page is returned
+		while (complete) {
+			if (journal.isComplete(page)) {
+				page++;
+				continue;
+			}
+			int items = downloadPage(journal, page, totalePages);
+			if (items < 0)
+				complete = false;
+			else if (items < PAGE_SIZE)
+				break;
 			page++;
-			fileName = projectName + "_" + page + ".csv";
-			file = new File( fileName);
 		}
-		if (page > 0) {
-			page--;
-			fileName = projectName + "_" + page + ".csv";
-			file = new File( fileName);
-			file.delete();
+		// Pages kept from an interrupted download are as recent as the oldest
+		// of them
+		if (complete)
+			saveLastIssue(state, totalIssues, Math.min(syncTime, oldestPageModified()));
+		else
+			System.out.println("Jira download incomplete, run again to resume it");
+	}
+
+	/**
+	 * It downloads the pages not yet journaled with at most "concurrency"
+	 * requests at the same time
+	 * @param journal
+	 * @param totalePages
+	 * @return true if every page was downloaded
+	 */
+	private boolean downloadPages(final PageJournal journal, final int totalePages) {
+		ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+		List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+		try {
+			for (int i = 0; i < totalePages; i++) {
+				final int page = i;
+				if (!journal.isComplete(page))
+					results.add(pool.submit(() -> downloadPage(journal, page, totalePages)));
+			}
+			boolean complete = true;
+			for (Future<Integer> result : results) {
+				if (result.get() < 0)
+					complete = false;
+			}
+			return complete;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+			return false;
+		} finally {
+			pool.shutdownNow();
 		}
+	}
 
-		while (true) {
-			String tempQuery = "?jqlQuery=project+%3D+{0}+ORDER+BY+key+ASC&tempMax=1000&pager/start={1}";
-			tempQuery = tempQuery.replace("{0}", projectName);
-			tempQuery = tempQuery.replace("{1}", ((page) * 1000) + "");
+	/**
+	 * It downloads a page, retrying with exponential backoff
+	 * @param journal
+	 * @param page
+	 * @param totalePages
+	 * @return the number of issues of the page, -1 if all attempts failed
+	 */
+	private int downloadPage(final PageJournal journal, final int page, final int totalePages) {
+		Integer items = withRetries("Page " + page, () -> {
 			if (totalePages >= (page + 1))
 				System.out.println("Download Jira issues. Page: " + (page + 1) + "/" + totalePages);
-			try {
-				url = new URL(jiraURL + tempQuery);
-				connection = url.openConnection();
-				d = parseXML(connection.getInputStream());
+			return fetchPage(journal, page);
+		});
+		if (items == null) {
+			System.out.println("Download of Jira page " + (page + 1) + " failed");
+			return -1;
+		}
+		return items;
+	}
 
-				NodeList descNodes = d.getElementsByTagName("item");
-				if (descNodes.getLength() == 0)
-					return;
-				fileName = projectName + "_" + page + ".csv";
-				file = new File(fileName);
-				if (file.exists() && !file.isDirectory()) {
-					return;
-				}
-				PrintWriter pw = null;
-				try {
-					pw = new PrintWriter(file);
-				} catch (FileNotFoundException e1) {
-					// TODO Auto-generated catch block
-					e1.printStackTrace();
-				}
-				printHeader(pw);
-				printIssuesOfPage(d, pw);
-				pw.close();
-				page++;
+	/**
+	 * It runs a request, retrying with exponential backoff
+	 * @param what description used in the log
+	 * @param request
+	 * @return the result, null if all attempts failed
+	 */
+	private <T> T withRetries(String what, Callable<T> request) {
+		long delay = initialBackoff;
+		for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+			try {
+				return request.call();
 			} catch (Exception e) {
-				e.printStackTrace();
-				pw.println(("Retrying in 1 minute"));
+				pw.println(what + ", attempt " + attempt + " failed: " + e);
+				if (attempt == maxAttempts)
+					break;
+				metrics.increment("jira.retries");
+				pw.println("Retrying in " + (delay / 1000) + " seconds");
 				try {
-					Thread.sleep(60000);
+					Thread.sleep(delay);
 				} catch (InterruptedException e1) {
-					// TODO Auto-generated catch block
-					e1.printStackTrace();
+					Thread.currentThread().interrupt();
+					return null;
 				}
-				printIssues();
+				delay = Math.min(delay * 2, MAX_BACKOFF);
 			}
 		}
-		
+		return null;
 	}
 
-	private void printHeader(PrintWriter pw) {
-		String header = "issueKey;title;resolution;status;assignee;createdDateEpoch;resolvedDateEpoch;type;attachments;priority;comments;";
-		pw.println(header);
+	/**
+	 * It downloads a page and saves it, through a temporary file so that only
+	 * complete pages are ever read. Issues are written while the response
+	 * is still being read.
+	 * @param journal
+	 * @param page
+	 * @return the number of issues of the page
+	 * @throws Exception
+	 */
+	private int fetchPage(PageJournal journal, int page) throws Exception {
+		String tempQuery = "?jqlQuery=project+%3D+{0}+ORDER+BY+key+ASC&tempMax={2}&pager/start={1}";
+		tempQuery = tempQuery.replace("{0}", projectName);
+		tempQuery = tempQuery.replace("{1}", ((page) * PAGE_SIZE) + "");
+		tempQuery = tempQuery.replace("{2}", PAGE_SIZE + "");
+		File file = journal.pageFile(page);
+		File part = new File(file.getPath() + ".part");
+		int items;
+		long start = System.nanoTime();
+		try (InputStream stream = open(new URL(jiraURL + tempQuery));
+				PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(part)))) {
+			printHeader(out);
+			items = new JiraXmlReader().read(stream, item -> printIssue(item, out));
+		}
+		metrics.record("jiraPage", System.nanoTime() - start);
+		metrics.increment("jira.pages");
+		metrics.increment("jira.issues", items);
+		if (items == 0) {
+			part.delete();
+			return 0;
+		}
+		if (file.exists())
+			file.delete();
+		if (!part.renameTo(file))
+			throw new IOException("Cannot write " + file);
+		journal.record(page, items);
+		return items;
+	}
+
+	private InputStream open(URL url) throws IOException {
+		URLConnection connection = url.openConnection();
+		connection.setConnectTimeout(CONNECT_TIMEOUT);
+		connection.setReadTimeout(READ_TIMEOUT);
+		return connection.getInputStream();
 	}
 
 	/**
-	 * 
-	 * @param doc
-	 * @param nodeName
-	 * @return
+	 * It updates the local issues: only the issues updated since the last
+	 * synchronization are requested and merged into the pages in place. When
+	 * the project was never fully downloaded, or its download stopped early,
+	 * printIssues() is used instead so that the missing pages are resumed.
 	 */
-	private void printIssuesOfPage(Document doc, PrintWriter pw) {
-		NodeList descNodes = doc.getElementsByTagName("item");
-		SimpleDateFormat sdf = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z", Locale.ENGLISH);
-		for (int i = 0; i < descNodes.getLength(); i++) {
-			Node node = descNodes.item(i);
-			String issueKey = "";
-			String priority = "";
-			String title = "";
-			String resolution = "";
-			String status = "";
-			String assignee = "";
-			String commentsString = "";
-			String type = "";
-			long createdDateEpoch = 0;
-			long resolvedDateEpoch = 0;
-			NodeList children = node.getChildNodes();
-			List<String> attachmentsList = new LinkedList<String>();
-			List<String> commentsList = new LinkedList<String>();
-			for (int p = 0; p < children.getLength(); p++) {
-				switch (children.item(p).getNodeName()) {
-				case "title":
-					title = children.item(p).getTextContent().replace(";", "");
-					break;
-				case "resolution":
-					resolution = children.item(p).getTextContent();
-					break;
-				case "key":
-					issueKey = children.item(p).getTextContent();
-					break;
-				case "created":
-					String createdDate = children.item(p).getTextContent();
-					try {
-						createdDateEpoch = sdf.parse(createdDate).getTime();
-					} catch (ParseException e1) {
-						// TODO Auto-generated catch block
-						e1.printStackTrace();
-					}
-					break;
-				case "resolved":
-					String resolveddDate = children.item(p).getTextContent();
-					try {
-						resolvedDateEpoch = sdf.parse(resolveddDate).getTime();
-					} catch (ParseException e) {
-						// TODO Auto-generated catch block
-						e.printStackTrace();
-					}
-					break;
-				case "status":
-					status = children.item(p).getTextContent();
-					break;
-				case "priority":
-					priority = children.item(p).getTextContent();
-					break;
-				case "assignee":
-					assignee = children.item(p).getTextContent();
-					break;
-				case "comments":
-					NodeList comments = children.item(p).getChildNodes();
-					for (int u = 0; u < comments.getLength(); u++) {
-						commentsList.add(children.item(p).getTextContent());
-					}
-					break;
-				case "attachments":
-					NodeList attachments = children.item(p).getChildNodes();
-					// System.out.println(attachments.getLength());
-					for (int u = 0; u < attachments.getLength(); u++) {
-						Node attachment = attachments.item(u);
-						NamedNodeMap attchmentName = attachment.getAttributes();
-						if (attchmentName != null) {
-							String att = attchmentName.getNamedItem("name").getNodeValue();
-							attachmentsList.add(att);
-						}
-					}
-					break;
-				case "type":
-					type = children.item(p).getTextContent();
-					break;
+	public void updateIssues() {
+		long start = System.currentTimeMillis();
+		try {
+			synchronizeIssues();
+		} finally {
+			metrics.stage("jira", System.currentTimeMillis() - start);
+		}
+	}
+
+	private void synchronizeIssues() {
+		MiningState state = new MiningState(directory, projectName);
+		// A synchronization is recorded only after a complete download
+		if (!pageFile(0).exists() || (state.getLastSync() == 0
+				&& !new PageJournal(directory, projectName, PAGE_SIZE).isDownloaded())) {
+			printIssues();
+			return;
+		}
+		// Pages downloaded before synchronizations were recorded are as recent
+		// as the oldest of them
+		long lastSync = state.getLastSync();
+		if (lastSync == 0)
+			lastSync = oldestPageModified();
+		long syncTime = System.currentTimeMillis();
+		Map<String, String> rows = fetchUpdatedIssues(lastSync - SYNC_MARGIN);
+		if (rows == null) {
+			System.out.println("Jira synchronization failed, run again to retry it");
+			return;
+		}
+		System.out.println(rows.size() + " Jira issues updated since " + new Date(lastSync));
+		long highest = state.getLastIssue();
+		for (String key : rows.keySet())
+			highest = Math.max(highest, Long.parseLong(key.replaceFirst(".*?(\\d+).*", "$1")));
+		try {
+			mergeIssues(rows);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		saveLastIssue(state, highest, syncTime);
+	}
+
+	private File pageFile(int page) {
+		return new File(directory, projectName + "_" + page + ".csv");
+	}
+
+	private long oldestPageModified() {
+		long oldest = Long.MAX_VALUE;
+		int page = 0;
+		File file = pageFile(page);
+		while (file.exists()) {
+			oldest = Math.min(oldest, file.lastModified());
+			page++;
+			file = pageFile(page);
+		}
+		return oldest;
+	}
+
+	/**
+	 * It downloads the rows of the issues updated since a time
+	 * @param since epoch millis
+	 * @return the rows by issue key in key order, null if the download failed
+	 */
+	private Map<String, String> fetchUpdatedIssues(long since) {
+		final Map<String, String> rows = new LinkedHashMap<String, String>();
+		SimpleDateFormat jqlDate = new SimpleDateFormat("yyyy/MM/dd HH:mm");
+		String tempQuery = "?jqlQuery=project+%3D+{0}+AND+updated+%3E%3D+%22{1}%22+ORDER+BY+key+ASC&tempMax={2}&pager/start={3}";
+		tempQuery = tempQuery.replace("{0}", projectName);
+		try {
+			tempQuery = tempQuery.replace("{1}", URLEncoder.encode(jqlDate.format(new Date(since)), "UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		tempQuery = tempQuery.replace("{2}", PAGE_SIZE + "");
+		for (int page = 0;; page++) {
+			final String query = tempQuery.replace("{3}", (page * PAGE_SIZE) + "");
+			Integer items = withRetries("Updated issues page " + page, () -> {
+				long start = System.nanoTime();
+				try (InputStream stream = open(new URL(jiraURL + query))) {
+					return new JiraXmlReader().read(stream, item -> rows.put(item.issueKey, toRow(item)));
+				} finally {
+					metrics.record("jiraPage", System.nanoTime() - start);
+				}
+			});
+			if (items == null)
+				return null;
+			if (items < PAGE_SIZE)
+				return rows;
+		}
+	}
+
+	/**
+	 * It replaces the rows of the updated issues in the pages and appends the
+	 * new issues to the last page
+	 * @param rows consumed by the merge
+	 * @throws IOException
+	 */
+	private void mergeIssues(Map<String, String> rows) throws IOException {
+		int page = 0;
+		File file = pageFile(page);
+		File last = file;
+		while (file.exists() && !rows.isEmpty()) {
+			List<String> lines = new ArrayList<String>();
+			boolean changed = false;
+			try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+				String line;
+				while ((line = br.readLine()) != null) {
+					int end = line.indexOf(';');
+					String row = end < 0 ? null : rows.remove(line.substring(0, end));
+					if (row != null) {
+						lines.add(row);
+						changed = true;
+					} else
+						lines.add(line);
 				}
 			}
-			String toPrint = issueKey + ";" + title + ";" + resolution + ";" + status + ";" + assignee + ";"
-					+ createdDateEpoch + ";" + resolvedDateEpoch + ";" + type + ";" + attachmentsList.toString() + ";"
-					+ priority + ";";
-			for (String comment : commentsList) {
-				toPrint += comment.replace(";", "").replace(":", "").replace(".", "").replace(",", "").replace("\n", "")
-						.replace("\r", "").replace("\t", "") + ";";
+			if (changed) {
+				File part = new File(file.getPath() + ".part");
+				try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(part)))) {
+					for (String line : lines)
+						out.println(line);
+				}
+				file.delete();
+				if (!part.renameTo(file))
+					throw new IOException("Cannot write " + file);
 			}
-			pw.println(toPrint);
+			last = file;
+			page++;
+			file = pageFile(page);
+		}
+		while (file.exists()) {
+			last = file;
+			page++;
+			file = pageFile(page);
+		}
+		if (!rows.isEmpty()) {
+			try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(last, true)))) {
+				for (String row : rows.values())
+					out.println(row);
+			}
+		}
+	}
 
+	/**
+	 * It records the highest issue number downloaded, used by the next run
+	 * to skip the download when no issue was added, and the time of the
+	 * synchronization
+	 * @param state
+	 * @param totalIssues
+	 * @param syncTime epoch millis, 0 to keep the previous one
+	 */
+	private void saveLastIssue(MiningState state, long totalIssues, long syncTime) {
+		if (totalIssues > 0) {
+			state.setLastIssue(totalIssues);
+			if (syncTime > 0)
+				state.setLastSync(syncTime);
+			state.save();
 		}
+		if (binaryStore) {
+			try {
+				IssueStore.writeBinary(directory, projectName);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
 
+	private void printHeader(PrintWriter pw) {
+		String header = "issueKey;title;resolution;status;assignee;createdDateEpoch;resolvedDateEpoch;type;attachments;priority;comments;";
+		pw.println(header);
+	}
+
+	/**
+	 * It prints an issue as a row of the page
+	 * @param item
+	 * @param pw
+	 */
+	private void printIssue(JiraXmlReader.Item item, PrintWriter pw) {
+		pw.println(toRow(item));
+	}
+
+	private String toRow(JiraXmlReader.Item item) {
+		StringBuilder toPrint = new StringBuilder();
+		toPrint.append(item.issueKey).append(';').append(item.title).append(';').append(item.resolution).append(';')
+				.append(item.status).append(';').append(item.assignee).append(';').append(item.createdDateEpoch)
+				.append(';').append(item.resolvedDateEpoch).append(';').append(item.type).append(';')
+				.append(item.attachments.toString()).append(';').append(item.priority).append(';');
+		for (String comment : item.comments) {
+			toPrint.append(comment.replace(";", "").replace(":", "").replace(".", "").replace(",", "")
+					.replace("\n", "").replace("\r", "").replace("\t", "")).append(';');
+		}
+		return toPrint.toString();
 	}
-}
\ No newline at end of file
+}
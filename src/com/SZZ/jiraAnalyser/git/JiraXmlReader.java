@@ -0,0 +1,211 @@
+package com.SZZ.jiraAnalyser.git;
+
+import java.io.InputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming reader of the Jira SearchRequest.xml format.
+ *
+ * The response is pulled with StAX and every item is handed over as soon as
+ * its closing tag is read, so at most one issue is held in memory whatever
+ * the size of the page. Only the direct children of an item are read; their
+ * value is their whole text content, as with the former DOM parsing.
+ */
+public class JiraXmlReader {
+
+	/*
+	 * StAX factories are not guaranteed to be thread-safe and pages are read
+	 * concurrently, so each thread has its own
+	 */
+	private static final ThreadLocal<XMLInputFactory> FACTORY = new ThreadLocal<XMLInputFactory>() {
+		@Override
+		protected XMLInputFactory initialValue() {
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+			factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+			factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+			return factory;
+		}
+	};
+
+	/**
+	 * Receives the issues of a page one at a time
+	 */
+	public interface Handler {
+		void issue(Item item) throws Exception;
+	}
+
+	/**
+	 * Fields of a Jira item
+	 */
+	public static class Item {
+		public String issueKey = "";
+		public String priority = "";
+		public String title = "";
+		public String resolution = "";
+		public String status = "";
+		public String assignee = "";
+		public String type = "";
+		public long createdDateEpoch = 0;
+		public long resolvedDateEpoch = 0;
+		public List<String> attachments = new LinkedList<String>();
+		public List<String> comments = new LinkedList<String>();
+	}
+
+	private final SimpleDateFormat sdf = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z", Locale.ENGLISH);
+
+	/**
+	 * It reads every item of the stream
+	 *
+	 * @param stream
+	 * @param handler
+	 * @return the number of items read
+	 * @throws Exception
+	 */
+	public int read(InputStream stream, Handler handler) throws Exception {
+		XMLStreamReader reader = FACTORY.get().createXMLStreamReader(stream);
+		int items = 0;
+		try {
+			while (reader.hasNext()) {
+				if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("item")) {
+					handler.issue(readItem(reader));
+					items++;
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return items;
+	}
+
+	/*
+	 * The reader is on <item>, it is left on </item>
+	 */
+	private Item readItem(XMLStreamReader reader) throws XMLStreamException {
+		Item item = new Item();
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.END_ELEMENT)
+				return item;
+			if (event != XMLStreamConstants.START_ELEMENT)
+				continue;
+			switch (reader.getLocalName()) {
+			case "title":
+				item.title = text(reader).replace(";", "");
+				break;
+			case "resolution":
+				item.resolution = text(reader);
+				break;
+			case "key":
+				item.issueKey = text(reader);
+				break;
+			case "created":
+				item.createdDateEpoch = parseDate(text(reader));
+				break;
+			case "resolved":
+				item.resolvedDateEpoch = parseDate(text(reader));
+				break;
+			case "status":
+				item.status = text(reader);
+				break;
+			case "priority":
+				item.priority = text(reader);
+				break;
+			case "assignee":
+				item.assignee = text(reader);
+				break;
+			case "type":
+				item.type = text(reader);
+				break;
+			case "comments":
+				readChildren(reader, item.comments, null);
+				break;
+			case "attachments":
+				readChildren(reader, item.attachments, "name");
+				break;
+			default:
+				skip(reader);
+				break;
+			}
+		}
+		return item;
+	}
+
+	/*
+	 * Text content of the current element and its descendants
+	 */
+	private String text(XMLStreamReader reader) throws XMLStreamException {
+		StringBuilder sb = new StringBuilder();
+		int depth = 1;
+		while (depth > 0) {
+			switch (reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				depth++;
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				depth--;
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				sb.append(reader.getText());
+				break;
+			default:
+				break;
+			}
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * It adds an attribute (or the text when attribute is null) of every
+	 * child element
+	 */
+	private void readChildren(XMLStreamReader reader, List<String> values, String attribute)
+			throws XMLStreamException {
+		while (true) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.END_ELEMENT)
+				return;
+			if (event != XMLStreamConstants.START_ELEMENT)
+				continue;
+			if (attribute == null) {
+				values.add(text(reader));
+			} else {
+				String value = reader.getAttributeValue(null, attribute);
+				if (value != null)
+					values.add(value);
+				skip(reader);
+			}
+		}
+	}
+
+	private void skip(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+				depth++;
+			else if (event == XMLStreamConstants.END_ELEMENT)
+				depth--;
+		}
+	}
+
+	private long parseDate(String date) {
+		try {
+			return sdf.parse(date).getTime();
+		} catch (ParseException e) {
+			e.printStackTrace();
+			return 0;
+		}
+	}
+}
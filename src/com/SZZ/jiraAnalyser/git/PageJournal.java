@@ -0,0 +1,110 @@
+package com.SZZ.jiraAnalyser.git;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Journal of the Jira pages already downloaded, so that an interrupted
+ * download resumes where it stopped. Every completed page is appended as
+ * "page;items" to projectName_pages.journal once its csv file is written.
+ *
+ * A page is complete when it was journaled with a full page of items and
+ * its file still exists; a partial page (usually the last one) is downloaded
+ * again since new issues may have been added to it.
+ */
+class PageJournal {
+
+	private final File directory;
+	private final String projectName;
+	private final int pageSize;
+	private final File file;
+	private final Map<Integer, Integer> pages = new HashMap<Integer, Integer>();
+
+	/**
+	 * @param directory where the pages are saved, null for the working directory
+	 * @param projectName
+	 * @param pageSize
+	 */
+	PageJournal(File directory, String projectName, int pageSize) {
+		this.directory = directory;
+		this.projectName = projectName;
+		this.pageSize = pageSize;
+		this.file = new File(directory, projectName + "_pages.journal");
+		if (file.exists())
+			read();
+		else
+			seedFromPages();
+	}
+
+	private void read() {
+		try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+			String line;
+			while ((line = br.readLine()) != null) {
+				String[] s = line.split(";");
+				if (s.length == 2) {
+					try {
+						pages.put(Integer.parseInt(s[0]), Integer.parseInt(s[1]));
+					} catch (NumberFormatException e) {
+						// truncated line of an interrupted run
+					}
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/*
+	 * Pages downloaded before the journal existed: as before, every page but
+	 * the last one is considered complete
+	 */
+	private void seedFromPages() {
+		int page = 0;
+		while (pageFile(page).exists())
+			page++;
+		for (int i = 0; i < page - 1; i++)
+			record(i, pageSize);
+	}
+
+	File pageFile(int page) {
+		return new File(directory, projectName + "_" + page + ".csv");
+	}
+
+	synchronized boolean isComplete(int page) {
+		Integer items = pages.get(page);
+		return items != null && items >= pageSize && pageFile(page).exists();
+	}
+
+	/**
+	 * It checks whether the whole project was downloaded: every page is
+	 * complete up to a journaled partial page, the last one
+	 * @return false if a download stopped early, or if the pages predate the
+	 *         journal and the size of the last one is unknown
+	 */
+	synchronized boolean isDownloaded() {
+		int page = 0;
+		while (isComplete(page))
+			page++;
+		return pages.get(page) != null && pageFile(page).exists();
+	}
+
+	/**
+	 * It records a downloaded page
+	 * @param page
+	 * @param items
+	 */
+	synchronized void record(int page, int items) {
+		pages.put(page, items);
+		try (PrintWriter out = new PrintWriter(new FileOutputStream(file, true))) {
+			out.println(page + ";" + items);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
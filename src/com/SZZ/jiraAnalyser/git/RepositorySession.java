@@ -0,0 +1,197 @@
+package com.SZZ.jiraAnalyser.git;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Long-lived handle on the cloned repository. It is opened once per analysis
+ * and shared by every Git query, so pack indexes are loaded only once.
+ *
+ * The underlying Repository is thread safe, ObjectReader and RevWalk are not:
+ * each worker thread gets its own reader and walk, which are all released
+ * together by close(). As a session may outlive many threads (e.g. when kept
+ * by the analysis server), a thread can release its own with releaseThread(),
+ * those of the threads that ended are released when another thread gets its
+ * own, and the walk parsing commits is replaced every PARSED_COMMITS commits
+ * so that it does not keep all of them.
+ */
+public class RepositorySession implements Closeable {
+
+	/*
+	 * Commits parsed by the walk of a thread before it is replaced
+	 */
+	private static final int PARSED_COMMITS = 10000;
+
+	/*
+	 * Reader and parsing walk of a thread
+	 */
+	private static class ThreadResources {
+		final Thread owner = Thread.currentThread();
+		final ObjectReader reader;
+		RevWalk walk;
+		int parsed = 0;
+
+		ThreadResources(ObjectReader reader) {
+			this.reader = reader;
+			this.walk = new RevWalk(reader);
+		}
+
+		void close() {
+			walk.close();
+			reader.close();
+		}
+	}
+
+	private final org.eclipse.jgit.api.Git git;
+	private final Repository repository;
+	private final List<ThreadResources> resources = new ArrayList<ThreadResources>();
+	private final ThreadLocal<ThreadResources> threadResources = new ThreadLocal<ThreadResources>();
+	private boolean closed = false;
+
+	/**
+	 * Opens the repository found in the working directory
+	 *
+	 * @param workingDirectory
+	 * @throws IOException
+	 */
+	public RepositorySession(File workingDirectory) throws IOException {
+		this.git = org.eclipse.jgit.api.Git.open(workingDirectory);
+		this.repository = git.getRepository();
+	}
+
+	/*
+	 * It returns the resources of the calling thread, creating them on first
+	 * use and releasing those of the threads that ended
+	 */
+	private ThreadResources getThreadResources() {
+		ThreadResources r = threadResources.get();
+		if (r != null)
+			return r;
+		synchronized (this) {
+			if (closed)
+				throw new IllegalStateException("Repository session already closed");
+			for (Iterator<ThreadResources> it = resources.iterator(); it.hasNext();) {
+				ThreadResources ended = it.next();
+				if (!ended.owner.isAlive()) {
+					ended.close();
+					it.remove();
+				}
+			}
+			r = new ThreadResources(repository.newObjectReader());
+			resources.add(r);
+		}
+		threadResources.set(r);
+		return r;
+	}
+
+	/**
+	 * It releases the reader and walk of the calling thread, e.g. when a
+	 * stage ends. The thread gets new ones if it uses the session again.
+	 */
+	public void releaseThread() {
+		ThreadResources r = threadResources.get();
+		if (r == null)
+			return;
+		threadResources.remove();
+		synchronized (this) {
+			if (resources.remove(r))
+				r.close();
+		}
+	}
+
+	public org.eclipse.jgit.api.Git getGit() {
+		return this.git;
+	}
+
+	public Repository getRepository() {
+		return this.repository;
+	}
+
+	/**
+	 * It returns the object reader owned by the calling thread
+	 *
+	 * @return
+	 */
+	public ObjectReader getReader() {
+		return getThreadResources().reader;
+	}
+
+	/**
+	 * It returns the RevWalk owned by the calling thread. It must only be
+	 * used for parsing objects, history walks need their own newRevWalk().
+	 *
+	 * @return
+	 */
+	public RevWalk getRevWalk() {
+		return getThreadResources().walk;
+	}
+
+	/**
+	 * It creates a fresh RevWalk sharing the reader of the calling thread.
+	 * Closing the returned walk does not close the shared reader.
+	 *
+	 * @return
+	 */
+	public RevWalk newRevWalk() {
+		return new RevWalk(getReader());
+	}
+
+	/**
+	 * It resolves a revision string (sha, sha^{tree}, HEAD, ...)
+	 *
+	 * @param revision
+	 * @return
+	 * @throws IOException
+	 */
+	public ObjectId resolve(String revision) throws IOException {
+		return repository.resolve(revision);
+	}
+
+	/**
+	 * It parses a commit with the RevWalk of the calling thread. The commits
+	 * returned stay valid when the walk is replaced.
+	 *
+	 * @param id
+	 * @return
+	 * @throws IOException
+	 */
+	public RevCommit parseCommit(AnyObjectId id) throws IOException {
+		ThreadResources r = getThreadResources();
+		if (++r.parsed > PARSED_COMMITS) {
+			r.walk.close();
+			r.walk = new RevWalk(r.reader);
+			r.parsed = 1;
+		}
+		return r.walk.parseCommit(id);
+	}
+
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * It releases every reader and walk handed out and closes the repository.
+	 * Calling it more than once has no effect.
+	 */
+	@Override
+	public synchronized void close() {
+		if (closed)
+			return;
+		closed = true;
+		for (ThreadResources r : resources)
+			r.close();
+		resources.clear();
+		git.close();
+	}
+}
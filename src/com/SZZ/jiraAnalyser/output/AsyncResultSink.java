@@ -0,0 +1,129 @@
+package com.SZZ.jiraAnalyser.output;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.SZZ.jiraAnalyser.entities.Link;
+import com.SZZ.jiraAnalyser.entities.Suspect;
+
+/**
+ * Result sink writing on a dedicated thread, so that the threads computing
+ * the results do not wait for formatting and disk writes.
+ *
+ * Results are queued, at most QUEUE_SIZE at a time, and passed to the
+ * wrapped sink in the order they were queued by each thread. Several
+ * threads can queue results at the same time. A write failure is reported
+ * by the next call and by close(), which waits for the queued results to be
+ * written.
+ */
+public class AsyncResultSink implements ResultSink {
+
+	private static final int QUEUE_SIZE = 4096;
+
+	/*
+	 * A queued result
+	 */
+	private interface Write {
+		void to(ResultSink sink) throws IOException;
+	}
+
+	private static final Write END = sink -> {
+	};
+
+	private final ResultSink sink;
+	private final BlockingQueue<Write> queue = new ArrayBlockingQueue<Write>(QUEUE_SIZE);
+	private final Thread writer;
+	private volatile Exception failure;
+	private boolean closed = false;
+
+	/**
+	 * It starts the writer thread
+	 * @param sink written by the writer thread only
+	 */
+	public AsyncResultSink(ResultSink sink) {
+		this.sink = sink;
+		this.writer = new Thread(this::drain, "result-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	@Override
+	public void bugFixingCommit(Link link) throws IOException {
+		enqueue(sink -> sink.bugFixingCommit(link));
+	}
+
+	@Override
+	public void bugInducingCommit(Link link, Suspect suspect) throws IOException {
+		enqueue(sink -> sink.bugInducingCommit(link, suspect));
+	}
+
+	private void enqueue(Write write) throws IOException {
+		checkFailure();
+		try {
+			queue.put(write);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while queuing a result");
+		}
+	}
+
+	/*
+	 * Writer thread: after a failure results are still taken, so that
+	 * producers are never blocked, but dropped
+	 */
+	private void drain() {
+		try {
+			while (true) {
+				Write write = queue.take();
+				if (write == END)
+					break;
+				if (failure == null) {
+					try {
+						write.to(sink);
+					} catch (Exception e) {
+						failure = e;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			if (failure == null)
+				failure = e;
+		} finally {
+			try {
+				sink.close();
+			} catch (Exception e) {
+				if (failure == null)
+					failure = e;
+			}
+		}
+	}
+
+	private void checkFailure() throws IOException {
+		Exception e = failure;
+		if (e instanceof IOException)
+			throw (IOException) e;
+		if (e != null)
+			throw new IOException("Cannot write the results", e);
+	}
+
+	/**
+	 * It waits for the queued results to be written and closes the sink
+	 * @throws IOException if a result could not be written
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			try {
+				queue.put(END);
+				writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while writing the results");
+			}
+		}
+		checkFailure();
+	}
+}
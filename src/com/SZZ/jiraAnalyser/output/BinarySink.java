@@ -0,0 +1,305 @@
+package com.SZZ.jiraAnalyser.output;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+import com.SZZ.jiraAnalyser.entities.Link;
+import com.SZZ.jiraAnalyser.entities.Suspect;
+
+/**
+ * The results in a compact binary columnar format:
+ * projectName_BugFixingCommit.bin and token_BugInducingCommits.bin.
+ *
+ * A file starts with the magic SZZR, a version and its columns (type and
+ * name, the names of the csv headers), followed by blocks of at most
+ * BLOCK_ROWS rows. A block holds its number of rows then each column in
+ * turn:
+ *  - commit ids: per row 0 when equal to the previous row, else 1 and the
+ *    20 bytes of the id
+ *  - timestamps: epoch millis as zigzag varint deltas from the previous row
+ *  - texts: per row a varint, 0 when equal to the previous row, 1 for null,
+ *    else the length + 2 followed by the UTF-8 bytes
+ * Rows are repeated in runs (the suspects of a link share its commit, issue
+ * type and often file), which these encodings store in one byte. Blocks do
+ * not depend on each other, so appending to a file only adds blocks.
+ *
+ * Version 1 files wrote 0 for every null text but the first of a block and
+ * never for repeated texts; they are still read, but not appended to.
+ */
+public class BinarySink implements ResultSink {
+
+	public static final int BLOCK_ROWS = 4096;
+
+	private static final int MAGIC = 0x535A5A52;
+	private static final int VERSION = 2;
+	private static final byte SHA = 0;
+	private static final byte TIME = 1;
+	private static final byte TEXT = 2;
+
+	private final String projectName;
+	private final Table bugFixing;
+	private final Table bugInducing;
+
+	/**
+	 * @param directory where the files are written, null for the working directory
+	 * @param projectName
+	 * @param token prefix of the bug inducing commits file
+	 * @param append whether results are added to the existing files
+	 * @throws IOException
+	 */
+	public BinarySink(File directory, String projectName, String token, boolean append) throws IOException {
+		this.projectName = projectName;
+		this.bugFixing = new Table(OutputFormat.BINARY.bugFixingFile(directory, projectName), append,
+				CsvSink.BUG_FIXING_HEADER.split(";"), new byte[] { SHA, TIME, TEXT, TEXT, TIME, TIME, TEXT });
+		this.bugInducing = new Table(OutputFormat.BINARY.bugInducingFile(directory, token), append,
+				CsvSink.BUG_INDUCING_HEADER.split(";"), new byte[] { SHA, TIME, TEXT, SHA, TIME, TEXT });
+	}
+
+	@Override
+	public void bugFixingCommit(Link l) throws IOException {
+		Table t = bugFixing;
+		t.sha(0, l.transaction.getId());
+		t.time(1, l.transaction.getTimeStamp().getTime());
+		t.text(2, l.transaction.getComment());
+		t.text(3, projectName + "-" + l.issue.getId());
+		t.time(4, l.issue.getOpen());
+		t.time(5, l.issue.getClose());
+		t.text(6, l.issue.getTitle());
+		t.endRow();
+	}
+
+	@Override
+	public void bugInducingCommit(Link l, Suspect s) throws IOException {
+		Table t = bugInducing;
+		t.sha(0, l.transaction.getId());
+		t.time(1, l.transaction.getTimeStamp().getTime());
+		t.text(2, s.getFileName());
+		t.sha(3, s.getCommitId());
+		t.time(4, s.getTs().getTime());
+		t.text(5, l.issue.getType());
+		t.endRow();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			bugFixing.close();
+		} finally {
+			bugInducing.close();
+		}
+	}
+
+	/**
+	 * Rows of a file kept by column until a block is full
+	 */
+	private static class Table {
+		private final DataOutputStream out;
+		private final byte[] types;
+		private final byte[][] shas;
+		private final long[][] times;
+		private final String[][] texts;
+		private int rows = 0;
+
+		Table(File file, boolean append, String[] names, byte[] types) throws IOException {
+			boolean exists = append && file.exists() && file.length() > 0;
+			if (exists) {
+				try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+					if (in.readInt() != MAGIC || in.readInt() != VERSION)
+						throw new IOException(file + " was written by another version, run the analysis with -full");
+				}
+			}
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, exists), 1 << 16));
+			this.types = types;
+			this.shas = new byte[types.length][];
+			this.times = new long[types.length][];
+			this.texts = new String[types.length][];
+			for (int c = 0; c < types.length; c++) {
+				if (types[c] == SHA)
+					shas[c] = new byte[BLOCK_ROWS * Constants.OBJECT_ID_LENGTH];
+				else if (types[c] == TIME)
+					times[c] = new long[BLOCK_ROWS];
+				else
+					texts[c] = new String[BLOCK_ROWS];
+			}
+			if (!exists) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(types.length);
+				for (int c = 0; c < types.length; c++) {
+					out.writeByte(types[c]);
+					out.writeUTF(names[c]);
+				}
+			}
+		}
+
+		void sha(int column, String sha) {
+			ObjectId.fromString(sha).copyRawTo(shas[column], rows * Constants.OBJECT_ID_LENGTH);
+		}
+
+		void time(int column, long millis) {
+			times[column][rows] = millis;
+		}
+
+		void text(int column, String text) {
+			texts[column][rows] = text;
+		}
+
+		void endRow() throws IOException {
+			if (++rows == BLOCK_ROWS)
+				writeBlock();
+		}
+
+		private void writeBlock() throws IOException {
+			if (rows == 0)
+				return;
+			writeVarint(out, rows);
+			for (int c = 0; c < types.length; c++) {
+				if (types[c] == SHA) {
+					byte[] ids = shas[c];
+					int n = Constants.OBJECT_ID_LENGTH;
+					for (int r = 0; r < rows; r++) {
+						if (r > 0 && equals(ids, (r - 1) * n, r * n, n))
+							out.writeByte(0);
+						else {
+							out.writeByte(1);
+							out.write(ids, r * n, n);
+						}
+					}
+				} else if (types[c] == TIME) {
+					long previous = 0;
+					for (int r = 0; r < rows; r++) {
+						long delta = times[c][r] - previous;
+						writeVarint(out, (delta << 1) ^ (delta >> 63));
+						previous = times[c][r];
+					}
+				} else {
+					String[] values = texts[c];
+					String previous = null;
+					for (int r = 0; r < rows; r++) {
+						String value = values[r];
+						if (r > 0 && (value == null ? previous == null : value.equals(previous)))
+							writeVarint(out, 0);
+						else if (value == null)
+							writeVarint(out, 1);
+						else {
+							byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+							writeVarint(out, bytes.length + 2);
+							out.write(bytes);
+						}
+						previous = value;
+						values[r] = null;
+					}
+				}
+			}
+			rows = 0;
+		}
+
+		void close() throws IOException {
+			try {
+				writeBlock();
+			} finally {
+				out.close();
+			}
+		}
+
+		private static boolean equals(byte[] a, int i, int j, int n) {
+			for (int k = 0; k < n; k++)
+				if (a[i + k] != a[j + k])
+					return false;
+			return true;
+		}
+	}
+
+	private static void writeVarint(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static long readVarint(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0;; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+	}
+
+	/**
+	 * It reads a file written by BinarySink, e.g. to convert it
+	 * @param file
+	 * @return the column names followed by the rows, with timestamps
+	 *         formatted as in the csv files
+	 * @throws IOException
+	 */
+	public static List<String[]> read(File file) throws IOException {
+		List<String[]> rows = new ArrayList<String[]>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			int version = in.readInt() == MAGIC ? in.readInt() : 0;
+			if (version < 1 || version > VERSION)
+				throw new IOException(file + " is not a result file");
+			int columns = in.readInt();
+			byte[] types = new byte[columns];
+			String[] names = new String[columns];
+			for (int c = 0; c < columns; c++) {
+				types[c] = in.readByte();
+				names[c] = in.readUTF();
+			}
+			rows.add(names);
+			byte[] id = new byte[Constants.OBJECT_ID_LENGTH];
+			while (true) {
+				int count;
+				try {
+					count = (int) readVarint(in);
+				} catch (EOFException e) {
+					return rows;
+				}
+				String[][] block = new String[count][columns];
+				for (int c = 0; c < columns; c++) {
+					long previous = 0;
+					for (int r = 0; r < count; r++) {
+						if (types[c] == SHA) {
+							if (in.readByte() == 0)
+								block[r][c] = block[r - 1][c];
+							else {
+								in.readFully(id);
+								block[r][c] = ObjectId.fromRaw(id).getName();
+							}
+						} else if (types[c] == TIME) {
+							long zigzag = readVarint(in);
+							previous += (zigzag >>> 1) ^ -(zigzag & 1);
+							block[r][c] = Timestamps.format(previous);
+						} else {
+							int length = (int) readVarint(in);
+							if (length == 0)
+								block[r][c] = version == 1 ? null : block[r - 1][c];
+							else if (length > 1) {
+								byte[] bytes = new byte[length - 2];
+								in.readFully(bytes);
+								block[r][c] = new String(bytes, StandardCharsets.UTF_8);
+							}
+						}
+					}
+				}
+				for (String[] row : block)
+					rows.add(row);
+			}
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package com.SZZ.jiraAnalyser.output;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import com.SZZ.jiraAnalyser.entities.Link;
+import com.SZZ.jiraAnalyser.entities.Suspect;
+
+/**
+ * The semicolon separated files of the results: projectName_BugFixingCommit.csv
+ * and token_BugInducingCommits.csv, written through buffers
+ */
+public class CsvSink implements ResultSink {
+
+	public static final String BUG_FIXING_HEADER = "commitsSha;commitTs;commitComment;issueKey;issueOpen;issueClose;issueTitle";
+	public static final String BUG_INDUCING_HEADER = "bugFixingId;bugFixingTs;bugFixingfileChanged;bugInducingId;bugInducingTs;issueType";
+
+	private final String projectName;
+	private final PrintWriter bugFixing;
+	private final PrintWriter bugInducing;
+
+	/**
+	 * @param directory where the files are written, null for the working directory
+	 * @param projectName
+	 * @param token prefix of the bug inducing commits file
+	 * @param append whether results are added to the existing files
+	 * @throws IOException
+	 */
+	public CsvSink(File directory, String projectName, String token, boolean append) throws IOException {
+		this.projectName = projectName;
+		this.bugFixing = open(OutputFormat.CSV.bugFixingFile(directory, projectName), append, BUG_FIXING_HEADER);
+		this.bugInducing = open(OutputFormat.CSV.bugInducingFile(directory, token), append, BUG_INDUCING_HEADER);
+	}
+
+	/**
+	 * It opens a result file, appending to it when asked and it already exists
+	 * @param file
+	 * @param append
+	 * @param header printed only when the file is (re)created
+	 * @return
+	 * @throws IOException
+	 */
+	private static PrintWriter open(File file, boolean append, String header) throws IOException {
+		boolean exists = append && file.exists();
+		PrintWriter printWriter = new PrintWriter(
+				new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, exists)), 1 << 16));
+		if (!exists)
+			printWriter.println(header);
+		return printWriter;
+	}
+
+	@Override
+	public void bugFixingCommit(Link l) throws IOException {
+		StringBuilder row = new StringBuilder(256);
+		row.append(l.transaction.getId()).append(';')
+				.append(Timestamps.format(l.transaction.getTimeStamp().getTime())).append(';')
+				.append(l.transaction.getComment()).append(';')
+				.append(projectName).append('-').append(l.issue.getId()).append(';')
+				.append(Timestamps.format(l.issue.getOpen())).append(';')
+				.append(Timestamps.format(l.issue.getClose())).append(';')
+				.append(l.issue.getTitle());
+		bugFixing.println(row);
+	}
+
+	@Override
+	public void bugInducingCommit(Link l, Suspect s) throws IOException {
+		StringBuilder row = new StringBuilder(192);
+		row.append(l.transaction.getId()).append(';')
+				.append(Timestamps.format(l.transaction.getTimeStamp().getTime())).append(';')
+				.append(s.getFileName()).append(';')
+				.append(s.getCommitId()).append(';')
+				.append(Timestamps.format(s.getTs().getTime())).append(';')
+				.append(l.issue.getType());
+		bugInducing.println();
+		bugInducing.println(row);
+	}
+
+	@Override
+	public void close() throws IOException {
+		bugFixing.close();
+		bugInducing.close();
+		if (bugFixing.checkError() || bugInducing.checkError())
+			throw new IOException("Cannot write the results of " + projectName);
+	}
+}
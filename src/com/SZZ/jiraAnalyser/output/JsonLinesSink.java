@@ -0,0 +1,121 @@
+package com.SZZ.jiraAnalyser.output;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import com.SZZ.jiraAnalyser.entities.Link;
+import com.SZZ.jiraAnalyser.entities.Suspect;
+
+/**
+ * The results as JSON Lines, one object per line with the fields of the csv
+ * headers: projectName_BugFixingCommit.jsonl and token_BugInducingCommits.jsonl
+ */
+public class JsonLinesSink implements ResultSink {
+
+	private final String projectName;
+	private final Writer bugFixing;
+	private final Writer bugInducing;
+	private final StringBuilder line = new StringBuilder(512);
+
+	/**
+	 * @param directory where the files are written, null for the working directory
+	 * @param projectName
+	 * @param token prefix of the bug inducing commits file
+	 * @param append whether results are added to the existing files
+	 * @throws IOException
+	 */
+	public JsonLinesSink(File directory, String projectName, String token, boolean append) throws IOException {
+		this.projectName = projectName;
+		this.bugFixing = open(OutputFormat.JSONL.bugFixingFile(directory, projectName), append);
+		this.bugInducing = open(OutputFormat.JSONL.bugInducingFile(directory, token), append);
+	}
+
+	private static Writer open(File file, boolean append) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, append), StandardCharsets.UTF_8),
+				1 << 16);
+	}
+
+	@Override
+	public void bugFixingCommit(Link l) throws IOException {
+		line.setLength(0);
+		line.append('{');
+		field("commitsSha", l.transaction.getId()).append(',');
+		field("commitTs", Timestamps.format(l.transaction.getTimeStamp().getTime())).append(',');
+		field("commitComment", l.transaction.getComment()).append(',');
+		field("issueKey", projectName + "-" + l.issue.getId()).append(',');
+		field("issueOpen", Timestamps.format(l.issue.getOpen())).append(',');
+		field("issueClose", Timestamps.format(l.issue.getClose())).append(',');
+		field("issueTitle", l.issue.getTitle()).append("}\n");
+		bugFixing.append(line);
+	}
+
+	@Override
+	public void bugInducingCommit(Link l, Suspect s) throws IOException {
+		line.setLength(0);
+		line.append('{');
+		field("bugFixingId", l.transaction.getId()).append(',');
+		field("bugFixingTs", Timestamps.format(l.transaction.getTimeStamp().getTime())).append(',');
+		field("bugFixingfileChanged", s.getFileName()).append(',');
+		field("bugInducingId", s.getCommitId()).append(',');
+		field("bugInducingTs", Timestamps.format(s.getTs().getTime())).append(',');
+		field("issueType", l.issue.getType()).append("}\n");
+		bugInducing.append(line);
+	}
+
+	private StringBuilder field(String name, String value) {
+		line.append('"').append(name).append("\":");
+		return quote(line, value);
+	}
+
+	/**
+	 * It appends a value as a JSON string
+	 * @param line
+	 * @param value
+	 * @return line
+	 */
+	public static StringBuilder quote(StringBuilder line, String value) {
+		if (value == null)
+			return line.append("null");
+		line.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				line.append("\\\"");
+				break;
+			case '\\':
+				line.append("\\\\");
+				break;
+			case '\n':
+				line.append("\\n");
+				break;
+			case '\r':
+				line.append("\\r");
+				break;
+			case '\t':
+				line.append("\\t");
+				break;
+			default:
+				if (c < 0x20)
+					line.append(String.format("\\u%04x", (int) c));
+				else
+					line.append(c);
+			}
+		}
+		return line.append('"');
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			bugFixing.close();
+		} finally {
+			bugInducing.close();
+		}
+	}
+}
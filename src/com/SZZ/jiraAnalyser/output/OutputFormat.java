@@ -0,0 +1,80 @@
+package com.SZZ.jiraAnalyser.output;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Formats of the result files
+ */
+public enum OutputFormat {
+	CSV("csv") {
+		@Override
+		public ResultSink open(File directory, String projectName, String token, boolean append) throws IOException {
+			return new CsvSink(directory, projectName, token, append);
+		}
+	},
+	JSONL("jsonl") {
+		@Override
+		public ResultSink open(File directory, String projectName, String token, boolean append) throws IOException {
+			return new JsonLinesSink(directory, projectName, token, append);
+		}
+	},
+	BINARY("bin") {
+		@Override
+		public ResultSink open(File directory, String projectName, String token, boolean append) throws IOException {
+			return new BinarySink(directory, projectName, token, append);
+		}
+	};
+
+	private final String extension;
+
+	private OutputFormat(String extension) {
+		this.extension = extension;
+	}
+
+	public String getExtension() {
+		return extension;
+	}
+
+	/**
+	 * @param directory null for the working directory
+	 * @param projectName
+	 * @return the file of the bug fixing commits of a project
+	 */
+	public File bugFixingFile(File directory, String projectName) {
+		return new File(directory, projectName + "_BugFixingCommit." + extension);
+	}
+
+	/**
+	 * @param directory null for the working directory
+	 * @param token prefix of the bug inducing commits file
+	 * @return the file of the bug inducing commits of a project
+	 */
+	public File bugInducingFile(File directory, String token) {
+		return new File(directory, token + "_BugInducingCommits." + extension);
+	}
+
+	/**
+	 * It opens the result files of a project in the working directory
+	 * @param projectName
+	 * @param token prefix of the bug inducing commits file
+	 * @param append whether results are added to the existing files
+	 * @return
+	 * @throws IOException
+	 */
+	public ResultSink open(String projectName, String token, boolean append) throws IOException {
+		return open(null, projectName, token, append);
+	}
+
+	/**
+	 * It opens the result files of a project in a directory
+	 * @param directory null for the working directory
+	 * @param projectName
+	 * @param token prefix of the bug inducing commits file
+	 * @param append whether results are added to the existing files
+	 * @return
+	 * @throws IOException
+	 */
+	public abstract ResultSink open(File directory, String projectName, String token, boolean append)
+			throws IOException;
+}
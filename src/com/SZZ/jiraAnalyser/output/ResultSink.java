@@ -0,0 +1,32 @@
+package com.SZZ.jiraAnalyser.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.SZZ.jiraAnalyser.entities.Link;
+import com.SZZ.jiraAnalyser.entities.Suspect;
+
+/**
+ * Destination of the results of a project: the bug fixing commits found by
+ * the links and the bug inducing commits found by their suspects.
+ *
+ * Implementations are not thread safe; AsyncResultSink lets several threads
+ * feed one of them through a dedicated writer thread.
+ */
+public interface ResultSink extends Closeable {
+
+	/**
+	 * It writes a bug fixing commit
+	 * @param link
+	 * @throws IOException
+	 */
+	void bugFixingCommit(Link link) throws IOException;
+
+	/**
+	 * It writes a bug inducing commit of a link
+	 * @param link
+	 * @param suspect
+	 * @throws IOException
+	 */
+	void bugInducingCommit(Link link, Suspect suspect) throws IOException;
+}
@@ -0,0 +1,28 @@
+package com.SZZ.jiraAnalyser.output;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Formatting of the timestamps of the results, as
+ * yyyy-MM-dd'T'HH:mm:ss.SSSZ in the default time zone. Unlike
+ * SimpleDateFormat the formatter is immutable, so it is built once and
+ * shared by all threads.
+ */
+public final class Timestamps {
+
+	private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ")
+			.withZone(ZoneId.systemDefault());
+
+	private Timestamps() {
+	}
+
+	/**
+	 * @param millis epoch millis
+	 * @return
+	 */
+	public static String format(long millis) {
+		return FORMAT.format(Instant.ofEpochMilli(millis));
+	}
+}